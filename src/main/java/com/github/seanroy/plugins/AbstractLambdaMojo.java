@@ -1,6 +1,7 @@
 package com.github.seanroy.plugins;
 
 import static com.amazonaws.util.CollectionUtils.isNullOrEmpty;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
@@ -9,33 +10,71 @@ import static java.util.stream.Collectors.toList;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import com.amazonaws.services.lambda.model.GetFunctionRequest;
-import com.amazonaws.services.lambda.model.GetFunctionResult;
+import com.amazonaws.services.lambda.model.GetFunctionConfigurationResult;
+import com.amazonaws.services.lambda.model.GetEventSourceMappingRequest;
 import com.amazonaws.services.lambda.model.UpdateFunctionCodeRequest;
 import com.amazonaws.services.lambda.model.UpdateFunctionCodeResult;
+import com.amazonaws.services.lambda.model.FunctionCode;
+import com.amazonaws.services.lambda.model.FunctionConfiguration;
+import com.amazonaws.services.lambda.model.Layer;
+import com.amazonaws.services.lambda.model.LayerVersionContentInput;
+import com.amazonaws.services.lambda.model.LayerVersionsListItem;
+import com.amazonaws.services.lambda.model.ListLayerVersionsRequest;
+import com.amazonaws.services.lambda.model.ListLayerVersionsResult;
+import com.amazonaws.services.lambda.model.PublishLayerVersionRequest;
+import com.amazonaws.services.lambda.model.PublishLayerVersionResult;
+import com.amazonaws.services.lambda.model.ResourceNotFoundException;
+import com.amazonaws.services.lambda.model.UpdateFunctionConfigurationRequest;
 import com.amazonaws.services.s3.model.*;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.AmazonWebServiceClient;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.Protocol;
 import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSSessionCredentials;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.regions.Regions;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.services.cloudwatchevents.AmazonCloudWatchEvents;
 import com.amazonaws.services.cloudwatchevents.AmazonCloudWatchEventsClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
@@ -45,15 +84,24 @@ import com.amazonaws.services.kinesis.AmazonKinesisClientBuilder;
 import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
 import com.amazonaws.services.lambda.model.GetFunctionConfigurationRequest;
-import com.amazonaws.services.lambda.model.ResourceNotFoundException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.sns.AmazonSNS;
 import com.amazonaws.services.sns.AmazonSNSClientBuilder;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+import com.github.seanroy.utils.AWSClientRegistry;
 import com.github.seanroy.utils.AWSEncryption;
+import com.github.seanroy.utils.AdaptiveConcurrencyHandler;
+import com.github.seanroy.utils.ArtifactDigest;
+import com.github.seanroy.utils.ArtifactSlimmer;
+import com.github.seanroy.utils.BufferedLog;
+import com.github.seanroy.utils.DependencySplitter;
 import com.github.seanroy.utils.JsonUtil;
+import com.github.seanroy.utils.Lazy;
+import com.github.seanroy.utils.S3ETags;
+import com.github.seanroy.utils.Waiter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
@@ -80,6 +128,17 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
     public static final String PRINCIPAL_EVENTS = "events.amazonaws.com"; // Cloudwatch events
     public static final String PRINCIPAL_SQS    = "sqs.amazonaws.com";
 
+    public static final String USER_METADATA_MD5 = "md5";
+    public static final String LAYER_DESCRIPTION_PREFIX = "dependencies sha256:";
+    public static final String LAMBDA_INSIGHTS_ACCOUNT = "580247275435";
+    /*
+     * Each warm-up invocation holds a thread and a connection until the function returns. 1000 is the default
+     * concurrency limit of an account.
+     */
+    public static final int MAX_WARM_UP_CONCURRENCY = 1000;
+
+    private static final long MB = 1024L * 1024L;
+
     @Parameter(property = "skip", defaultValue = "false")
     public boolean skip;
 
@@ -98,6 +157,53 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
      */
     @Parameter(property = "functionCode", defaultValue = "${functionCode}", required = true)
     public String functionCode;
+    /**
+     * <p>
+     * Deploy a copy of the deliverable without jar signatures, Maven metadata, duplicate license files, native
+     * libraries for Windows and macOS and test resources. The copy is written to slimDirectory. The default is false.
+     * </p>
+     */
+    @Parameter(property = "slim", defaultValue = "false")
+    public boolean slim;
+    /**
+     * <p>Globs of entries to leave out of the slimmed deliverable, e.g. **&#47;*.md.</p>
+     */
+    @Parameter(property = "slimExcludes")
+    public List<String> slimExcludes;
+    /**
+     * <p>Globs of entries to keep in the slimmed deliverable in any case.</p>
+     */
+    @Parameter(property = "slimIncludes")
+    public List<String> slimIncludes;
+    /**
+     * <p>The directory the slimmed deliverable is written to. The default is target/lambda-slim.</p>
+     */
+    @Parameter(property = "slimDirectory", defaultValue = "${project.build.directory}/lambda-slim")
+    public File slimDirectory;
+    /**
+     * <p>
+     * Deploy the project's classes as the function and its dependencies as a lambda layer, which is published as a
+     * new version only when the dependencies change. The project's classes are those found in classesDirectory. The
+     * default is false.
+     * </p>
+     */
+    @Parameter(property = "splitDependencies", defaultValue = "false")
+    public boolean splitDependencies;
+    /**
+     * <p>The directory the project's classes were built to. The default is target/classes.</p>
+     */
+    @Parameter(property = "classesDirectory", defaultValue = "${project.build.outputDirectory}")
+    public File classesDirectory;
+    /**
+     * <p>The name of the lambda layer the dependencies are published to. The default is the artifactId followed by -dependencies.</p>
+     */
+    @Parameter(property = "dependencyLayerName", defaultValue = "${project.artifactId}-dependencies")
+    public String dependencyLayerName;
+    /**
+     * <p>The directory the function and layer zips are written to. The default is target/lambda-layer.</p>
+     */
+    @Parameter(property = "layerDirectory", defaultValue = "${project.build.directory}/lambda-layer")
+    public File layerDirectory;
     /**
      * <p>The version of deliverable. Example value can be 1.0-SNAPSHOT.</p>
      */
@@ -112,6 +218,15 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
      */
     @Parameter(property = "region", alias = "region", defaultValue = "us-east-1")
     public String regionName;
+    /**
+     * <p>
+     * Regions to deploy to at the same time, instead of region. Each region is deployed with its own AWS clients and
+     * its own view of the functions' state. The deliverable is kept in a bucket per region, named s3Bucket followed
+     * by the region. It is uploaded to the first region's bucket and copied from there to the others.
+     * </p>
+     */
+    @Parameter(property = "regions")
+    public List<String> regions;
     /**
      * <p>
      * Amazon S3 bucket name where the .zip file containing your deployment
@@ -142,6 +257,104 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
      */
     @Parameter(property = "keyPrefix", defaultValue = "/")
     public String keyPrefix;
+    /**
+     * <p>
+     * Store the deliverable in S3 under a key made of keyPrefix and the deliverable's SHA-256 hash instead of its
+     * file name, so that identical deliverables share one object which is never overwritten. Uploaded objects are
+     * recorded in artifactIndex. Those in versioned buckets aren't looked up in S3 again, and delete-lambda leaves
+     * them in place since other functions may use them. The default is false.
+     * </p>
+     */
+    @Parameter(property = "contentAddressedKeys", defaultValue = "false")
+    public boolean contentAddressedKeys;
+    /**
+     * <p>
+     * File in which the deliverables uploaded under content addressed keys are recorded. It is shared by all
+     * projects of the user by default, at ~/.lambda-maven-plugin/artifact-index.json.
+     * </p>
+     */
+    @Parameter(property = "artifactIndex", defaultValue = "${user.home}/.lambda-maven-plugin/artifact-index.json")
+    public File artifactIndex;
+    /**
+     * <p>
+     * Size, in MB, above which the deliverable is uploaded to S3 as a multipart upload. The default is 16 MB.
+     * </p>
+     */
+    @Parameter(property = "multipartUploadThreshold", defaultValue = "16")
+    public int multipartUploadThreshold;
+    /**
+     * <p>
+     * Size, in MB, of each part of a multipart upload. S3 requires at least 5 MB. The default is 8 MB.
+     * </p>
+     */
+    @Parameter(property = "multipartUploadPartSize", defaultValue = "8")
+    public int multipartUploadPartSize;
+    /**
+     * <p>
+     * The number of parts of a multipart upload sent to S3 concurrently. The default is 4.
+     * </p>
+     */
+    @Parameter(property = "uploadThreads", defaultValue = "4")
+    public int uploadThreads;
+    /**
+     * <p>
+     * How the deliverable gets to Lambda. With "s3" it is uploaded to s3Bucket and Lambda reads it from there. With
+     * "direct" it is sent with the request that creates or updates the function, and S3 isn't used at all. With
+     * "auto" deliverables smaller than directUploadThreshold are sent directly. The default is "auto".
+     * </p>
+     */
+    @Parameter(property = "codeUploadMode", defaultValue = "auto")
+    public String codeUploadMode;
+    /**
+     * <p>
+     * Size, in MB, below which the deliverable is sent directly to Lambda when codeUploadMode is "auto". Lambda
+     * accepts direct uploads of up to 50 MB, which grow by a third when encoded into the request. The default is
+     * 10 MB.
+     * </p>
+     */
+    @Parameter(property = "directUploadThreshold", defaultValue = "10")
+    public int directUploadThreshold;
+    /**
+     * <p>
+     * How functions are deployed. With "threads", each function is deployed by one of deployConcurrency threads,
+     * which blocks during every call and every wait. With "async", the steps of all functions are chained as
+     * futures on asyncThreads threads, and waits for updates to finish are scheduled instead of sleeping. The
+     * default is threads.
+     * </p>
+     */
+    @Parameter(property = "deployEngine", defaultValue = "threads")
+    public String deployEngine;
+    /**
+     * <p>
+     * The number of threads making AWS calls for the async deploy engine. The default is 8.
+     * </p>
+     */
+    @Parameter(property = "asyncThreads", defaultValue = "8")
+    public int asyncThreads;
+    /**
+     * <p>
+     * The number of independent steps of a function, such as the clean up of orphaned triggers of different kinds or
+     * the creation of different triggers, the threads deploy engine runs at the same time. The default is 4.
+     * </p>
+     */
+    @Parameter(property = "stepConcurrency", defaultValue = "4")
+    public int stepConcurrency;
+    /**
+     * <p>
+     * The number of concurrent calls to each AWS service the build starts with. The limit grows while calls succeed
+     * and is halved whenever a call is throttled. The limits are shared by all modules of the build, and the first
+     * module's settings apply. The default is 4.
+     * </p>
+     */
+    @Parameter(property = "apiConcurrency", defaultValue = "4")
+    public int apiConcurrency;
+    /**
+     * <p>
+     * The most concurrent calls to each AWS service the limit may grow to. The default is 32.
+     * </p>
+     */
+    @Parameter(property = "maxApiConcurrency", defaultValue = "32")
+    public int maxApiConcurrency;
     /**
      * <p>
      * The runtime environment for the Lambda function.
@@ -150,6 +363,9 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
      * To use the Node.js runtime v4.3, set the value to "nodejs4.3". To use
      * earlier runtime (v0.10.42), set the value to "nodejs".
      * </p>
+     * <p>
+     * Java 11 and later run as "java11", "java17", "java21" and so on.
+     * </p>
      */
     @Parameter(property = "runtime", defaultValue = "java8")
     public String runtime;
@@ -189,6 +405,40 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
      */
     @Parameter(property = "memorySize", defaultValue = "1024")
     public int memorySize;
+    /**
+     * <p>
+     * The instruction set architecture of the functions, x86_64 or arm64. arm64 runs on Graviton processors, which
+     * are billed at a lower rate. The default is x86_64.
+     * </p>
+     */
+    @Parameter(property = "architecture", defaultValue = "x86_64")
+    public String architecture;
+    /**
+     * <p>The size of the functions' /tmp directory in MB, between 512 and 10240. The default is 512.</p>
+     */
+    @Parameter(property = "ephemeralStorage", defaultValue = "512")
+    public int ephemeralStorage;
+    /**
+     * <p>
+     * Active to sample and trace incoming requests with AWS X-Ray, or PassThrough to only trace requests which
+     * were sampled upstream. The default is PassThrough.
+     * </p>
+     */
+    @Parameter(property = "tracingMode", defaultValue = "PassThrough")
+    public String tracingMode;
+    /**
+     * <p>
+     * Attach the Lambda Insights extension, which reports the functions' cold starts, memory and CPU use to
+     * CloudWatch. Requires lambdaInsightsLayerVersion. The default is false.
+     * </p>
+     */
+    @Parameter(property = "lambdaInsights", defaultValue = "false")
+    public boolean lambdaInsights;
+    /**
+     * <p>The version of the Lambda Insights extension layer in the functions' region and architecture.</p>
+     */
+    @Parameter(property = "lambdaInsightsLayerVersion")
+    public Integer lambdaInsightsLayerVersion;
     /**
      * <p>A list of one or more security groups IDs in your VPC.</p>
      */
@@ -205,6 +455,53 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
      */
     @Parameter(property = "publish", defaultValue = "true")
     public boolean publish;
+    /**
+     * <p>
+     * Enable SnapStart, which initializes published versions ahead of time and resumes them from a snapshot instead
+     * of starting them cold. Requires a java11 runtime or later and implies publish. Aliases are only moved to a new
+     * version once its snapshot has been taken. The default is false.
+     * </p>
+     */
+    @Parameter(property = "snapStart", defaultValue = "false")
+    public boolean snapStart;
+    /**
+     * <p>
+     * The concurrent executions to reserve for each function, which also caps them. If not set, the reserved
+     * concurrency of the functions is left as it is.
+     * </p>
+     */
+    @Parameter(property = "reservedConcurrency")
+    public Integer reservedConcurrency;
+    /**
+     * <p>
+     * The concurrent executions to keep initialized for the alias of each function. Requires alias. Functions can
+     * provision concurrency for any of their aliases with a map of alias names to executions instead.
+     * </p>
+     */
+    @Parameter(property = "provisionedConcurrency")
+    public Integer provisionedConcurrency;
+    /**
+     * <p>
+     * The number of simultaneous invocations each new version gets before its aliases are moved to it, so that as
+     * many execution environments are initialized when traffic arrives. Requires publish. The default is 0, which
+     * skips the warm-up.
+     * </p>
+     */
+    @Parameter(property = "warmUpConcurrency", defaultValue = "0")
+    public int warmUpConcurrency;
+    /**
+     * <p>The JSON event the warm-up invokes the functions with. The default is {}.</p>
+     */
+    @Parameter(property = "warmUpPayload", defaultValue = "{}")
+    public String warmUpPayload;
+    /**
+     * <p>
+     * The number of warm-up invocations which may fail before the deployment of a function fails, leaving its aliases
+     * on the versions they pointed to. The default is 0.
+     * </p>
+     */
+    @Parameter(property = "warmUpErrorThreshold", defaultValue = "0")
+    public int warmUpErrorThreshold;
     /**
      * <p>The suffix for the lambda function.</p>
      */
@@ -236,17 +533,203 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
      */
     @Parameter(property = "clientConfiguration")
     public Map<String, String> clientConfiguration;
+    /**
+     * <p>
+     * The maximum number of Lambda functions processed concurrently. Output for each function is buffered and
+     * written to the build log as a single section when concurrency is greater than 1. The default value is 1.
+     * </p>
+     */
+    @Parameter(property = "deployConcurrency", defaultValue = "1")
+    public int deployConcurrency;
+    /**
+     * <p>
+     * File in which the hashes, versions and ARNs of deployed functions are recorded. The default is
+     * target/lambda-deployment-manifest.json.
+     * </p>
+     */
+    @Parameter(property = "deploymentManifest", defaultValue = "${project.build.directory}/lambda-deployment-manifest.json")
+    public File deploymentManifest;
+    /**
+     * <p>
+     * Skip functions whose deliverable and configuration are identical to the ones recorded in the deployment
+     * manifest, without making any calls to AWS. An explicit forceUpdate=true disables skipping. The default is false.
+     * </p>
+     */
+    @Parameter(property = "skipUnchanged", defaultValue = "false")
+    public boolean skipUnchanged;
+    /**
+     * <p>
+     * Before skipping an unchanged function, check with a single request that it still exists and runs the
+     * recorded deliverable. The default is false.
+     * </p>
+     */
+    @Parameter(property = "verifyUnchanged", defaultValue = "false")
+    public boolean verifyUnchanged;
+    /**
+     * <p>
+     * The number of configured functions from which the state of the functions is read with a single paginated
+     * scan of ListFunctions instead of one GetFunction request per function. The default is 25.
+     * </p>
+     */
+    @Parameter(property = "listFunctionsThreshold", defaultValue = "25")
+    public int listFunctionsThreshold;
+    /**
+     * <p>
+     * File to which the plan goal writes the changes it found, and from which the apply goal reads the changes to
+     * make. The default is target/lambda-change-set.json.
+     * </p>
+     */
+    @Parameter(property = "changeSet", defaultValue = "${project.build.directory}/lambda-change-set.json")
+    public File changeSet;
+    /**
+     * <p>
+     * The memory sizes in MB the tune goal benchmarks the functions at. The default is 128, 256, 512, 1024, 1536,
+     * 2048 and 3008.
+     * </p>
+     */
+    @Parameter(property = "tuneMemorySizes")
+    public List<Integer> tuneMemorySizes;
+    /**
+     * <p>
+     * The architectures the tune goal benchmarks the functions on, x86_64 and/or arm64. The default is the
+     * architecture each function has.
+     * </p>
+     */
+    @Parameter(property = "tuneArchitectures")
+    public List<String> tuneArchitectures;
+    /**
+     * <p>The number of measured invocations of each memory size and architecture. The default is 10.</p>
+     */
+    @Parameter(property = "tuneInvocations", defaultValue = "10")
+    public int tuneInvocations;
+    /**
+     * <p>The JSON event the tune goal invokes the functions with. The default is {}.</p>
+     */
+    @Parameter(property = "tunePayload", defaultValue = "{}")
+    public String tunePayload;
+    /**
+     * <p>
+     * What the tune goal recommends a memory size for: cost for the cheapest, speed for the fastest, or balanced
+     * for the best product of cost and duration. The default is cost.
+     * </p>
+     */
+    @Parameter(property = "tuneStrategy", defaultValue = "cost")
+    public String tuneStrategy;
+    /**
+     * <p>File to which the tune goal writes its measurements and recommendations. The default is target/lambda-tune.md.</p>
+     */
+    @Parameter(property = "tuneReport", defaultValue = "${project.build.directory}/lambda-tune.md")
+    public File tuneReport;
+    /**
+     * <p>
+     * Confirms that the tune goal may change the memory size and architecture of $LATEST while it measures, which
+     * affects unqualified invocations and triggers of the functions. The default is false, which refuses to tune.
+     * </p>
+     */
+    @Parameter(property = "tuneLatest", defaultValue = "false")
+    public boolean tuneLatest;
+    /**
+     * <p>
+     * The endpoint of the Lambda API, e.g. http://localhost:4566 for a local stand-in. The default is the endpoint
+     * of the region.
+     * </p>
+     */
+    @Parameter(property = "lambdaEndpoint")
+    public String lambdaEndpoint;
+    /**
+     * <p>
+     * Look for orphaned SNS subscriptions among all subscriptions of the account, listed once per build. When false,
+     * only the topics named in a function's resource policy are looked at. The default is true.
+     * </p>
+     */
+    @Parameter(property = "scanSNSSubscriptions", defaultValue = "true")
+    public boolean scanSNSSubscriptions;
+
+    /**
+     * <p>
+     * Remove duplicate statements, and statements of SNS topics and CloudWatch event rules which are no longer
+     * triggers, from the resource policy of each function after it is deployed. The default is true.
+     * </p>
+     */
+    @Parameter(property = "compactPolicy", defaultValue = "true")
+    public boolean compactPolicy;
+    /**
+     * <p>
+     * Milliseconds before the first check whether a function or trigger has finished updating. Subsequent checks
+     * back off exponentially. The default is 250.
+     * </p>
+     */
+    @Parameter(property = "waiterInitialDelay", defaultValue = "250")
+    public long waiterInitialDelay;
+    /**
+     * <p>The maximum number of milliseconds between two checks whether an update has finished. The default is 5000.</p>
+     */
+    @Parameter(property = "waiterMaxDelay", defaultValue = "5000")
+    public long waiterMaxDelay;
+    /**
+     * <p>The number of seconds to wait for an update to finish before failing the build. The default is 600.</p>
+     */
+    @Parameter(property = "waiterTimeout", defaultValue = "600")
+    public long waiterTimeout;
     
     public String fileName;
+    /**
+     * The version of the deliverable's S3 object functions are created and updated with, if the bucket is versioned.
+     */
+    public String s3ObjectVersion;
+    /**
+     * The zip of the dependency layer and the hash of the dependencies in it, if the dependencies were split off.
+     */
+    public File dependencyLayerZip;
+    public String dependenciesSha256;
+    /**
+     * The version of the dependency layer the functions are created and updated with.
+     */
+    public String dependencyLayerArn;
+    /*
+     * When deploying to several regions, the first region announces the bucket the deliverable was uploaded to, and
+     * the other regions copy it from there.
+     */
+    CompletableFuture<String> uploadedTo;
+    CompletableFuture<String> copySource;
     public AWSCredentials credentials;
-    public AmazonS3 s3Client;
-    public AWSLambda lambdaClient;
-    public AmazonSNS snsClient;
-    public AmazonCloudWatchEvents eventsClient;
-    public AmazonDynamoDBStreams dynamoDBStreamsClient;
-    public AmazonKinesis kinesisClient;
-    public AmazonCloudWatchEvents cloudWatchEventsClient;
-    public AmazonSQS sqsClient;
+    private final Lazy<AmazonS3> s3Client = client(AmazonS3ClientBuilder::standard);
+    private final Lazy<AWSLambda> lambdaClient = client(AWSLambdaClientBuilder::standard);
+    private final Lazy<AmazonSNS> snsClient = client(AmazonSNSClientBuilder::standard);
+    private final Lazy<AmazonCloudWatchEvents> eventsClient = client(AmazonCloudWatchEventsClientBuilder::standard);
+    private final Lazy<AmazonDynamoDBStreams> dynamoDBStreamsClient = client(AmazonDynamoDBStreamsClientBuilder::standard);
+    private final Lazy<AmazonKinesis> kinesisClient = client(AmazonKinesisClientBuilder::standard);
+    private final Lazy<AmazonSQS> sqsClient = client(AmazonSQSClientBuilder::standard);
+    private final Lazy<ByteBuffer> functionCodeBytes = new Lazy<>(this::mapFunctionCode);
+    public RemoteState remoteState;
+    public AdaptiveConcurrencyHandler concurrencyHandler;
+
+    private static final ThreadLocal<Log> functionLog = new ThreadLocal<>();
+    /*
+     * The log of the mojo running on this thread, and of the mojo which started last, for AWS calls made outside of
+     * the steps of a function.
+     */
+    private static final ThreadLocal<Log> threadMojoLog = new ThreadLocal<>();
+    private static volatile Log lastMojoLog;
+    private final Map<String, Log> asyncLogs = new ConcurrentHashMap<>();
+    private ExecutorService asyncExecutor;
+    private ScheduledExecutorService asyncScheduler;
+
+    /**
+     * Returns the log of the function currently being processed on this thread, or the mojo's log otherwise.
+     */
+    @Override
+    public Log getLog() {
+        return ofNullable(functionLog.get()).orElseGet(super::getLog);
+    }
+
+    /**
+     * Returns the log of the function currently being processed on this thread, else the log of the mojo running on
+     * this thread, else the log of the mojo which started last. Used by what is shared by the mojos of a build.
+     */
+    static Log currentLog() {
+        return ofNullable(functionLog.get()).orElseGet(() -> ofNullable(threadMojoLog.get()).orElse(lastMojoLog));
+    }
 
     protected boolean checkSkip() {
         if(skip) {
@@ -260,9 +743,14 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
         initAWSCredentials();
         initAWSClients();
         try {
+            initSlimFunctionCode();
+            initDependencyLayer();
             initFileName();
             initVersion();
             initLambdaFunctionsConfiguration();
+            lambdaFunctions = selectLambdaFunctions(lambdaFunctions);
+            initRemoteState();
+            lambdaFunctions.forEach(lambdaFunction -> lambdaFunction.withEnvironmentVariables(environmentVariables(lambdaFunction)));
 
             lambdaFunctions.forEach(lambdaFunction -> getLog().debug(lambdaFunction.toString()));
         } catch (Exception e) {
@@ -271,117 +759,885 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
         }
     }
 
-    void uploadJarToS3() throws Exception {
-        String bucket = getBucket();
-        File file = new File(functionCode);
-        String localmd5 = DigestUtils.md5Hex(new FileInputStream(file));
-        getLog().debug(String.format("Local file's MD5 hash is %s.", localmd5));
-
-        ofNullable(getObjectMetadata(bucket))
-                .map(ObjectMetadata::getETag)
-                .map(remoteMD5 -> {
-                    getLog().info(fileName + " exists in S3 with MD5 hash " + remoteMD5);
-                    // This comparison will no longer work if we ever go to multipart uploads.  Etags are not
-                    // computed as MD5 sums for multipart uploads in s3.
-                    return localmd5.equals(remoteMD5);
-                })
-                .map(isTheSame -> {
-                    if (isTheSame) {
-                        getLog().info(fileName + " is up to date in AWS S3 bucket " + s3Bucket + ". Not uploading...");
-                        return true;
+    /**
+     * Applies the pipeline to every configured lambda function using up to deployConcurrency worker threads. Every
+     * function is attempted; failures are reported together, in configuration order, once all functions are done.
+     * Steps the pipeline hands to {@link #async} run on up to stepConcurrency further threads per worker.
+     *
+     * @param section label logged at the start of each function's section
+     * @param pipeline the steps to apply to each function
+     * @throws MojoExecutionException if the pipeline failed for any function
+     */
+    void forEachLambdaFunction(String section, Function<LambdaFunction, LambdaFunction> pipeline) throws MojoExecutionException {
+        int threads = Math.max(1, Math.min(deployConcurrency, lambdaFunctions.size()));
+        Log mojoLog = getLog();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        asyncExecutor = Executors.newFixedThreadPool(threads * Math.max(1, stepConcurrency));
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        try {
+            List<BufferedLog> logs = new ArrayList<>();
+            List<Future<Throwable>> results = new ArrayList<>();
+            lambdaFunctions.forEach(lambdaFunction -> {
+                BufferedLog log = threads > 1 ? new BufferedLog(mojoLog) : null;
+                logs.add(log);
+                asyncLogs.put(lambdaFunction.getFunctionName(), ofNullable((Log) log).orElse(mojoLog));
+                results.add(executor.submit(() -> {
+                    functionLog.set(ofNullable((Log) log).orElse(mojoLog));
+                    try {
+                        getLog().info("---- " + section + " " + lambdaFunction.getFunctionName() + " -----");
+                        pipeline.apply(lambdaFunction);
+                        return null;
+                    } catch (Exception e) {
+                        getLog().error("Error processing " + lambdaFunction.getFunctionName(), e);
+                        return e;
+                    } finally {
+                        functionLog.remove();
                     }
-                    return null; // file should be imported
-                })
-                .orElseGet(() -> {
-                    upload(file);
-                    return true;
-                });
-    }
+                }));
+            });
 
-    Function<LambdaFunction, LambdaFunction> updateFunctionCode = (LambdaFunction lambdaFunction) -> {
-        getLog().info("About to update functionCode for " + lambdaFunction.getFunctionName());
-        UpdateFunctionCodeRequest updateFunctionRequest = new UpdateFunctionCodeRequest()
-                .withFunctionName(lambdaFunction.getFunctionName())
-                .withS3Bucket(s3Bucket)
-                .withS3Key(fileName)
-                .withPublish(lambdaFunction.isPublish());
-        UpdateFunctionCodeResult updateFunctionCodeResult = lambdaClient.updateFunctionCode(updateFunctionRequest);
-
-        // wait until the UpdateFunctionCode finishes processing to avoid com.amazonaws.services.lambda.model.ResourceConflictException. See: https://docs.aws.amazon.com/lambda/latest/dg/functions-states.html
-        GetFunctionRequest getFunctionRequest = new GetFunctionRequest()
-                .withFunctionName(lambdaFunction.getFunctionName());
-        GetFunctionResult getFunctionResult = lambdaClient.getFunction(getFunctionRequest);
-
-        while (!getFunctionResult.getConfiguration().getState().equals("Active")
-                || !getFunctionResult.getConfiguration().getLastUpdateStatus().equals("Successful")) {
-            try {
-                getLog().info(String.format("UpdateFunctionCode for %s is still processing <State: %s, LastUpdateStatus: %s>, waiting... ", lambdaFunction.getFunctionName(), getFunctionResult.getConfiguration().getState(), getFunctionResult.getConfiguration().getLastUpdateStatus()));
-                Thread.sleep(3000);
-                getFunctionResult = lambdaClient.getFunction(getFunctionRequest);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+            // Wait for the functions in configuration order so their sections are written deterministically.
+            for (int i = 0; i < results.size(); i++) {
+                Throwable failure = results.get(i).get();
+                ofNullable(logs.get(i)).ifPresent(BufferedLog::flush);
+                if (failure != null) {
+                    failures.put(lambdaFunctions.get(i).getFunctionName(), failure);
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while processing lambda functions", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+            asyncExecutor.shutdownNow();
+            asyncLogs.clear();
         }
-        getLog().info("UpdateFunctionCode finished successfully for " + lambdaFunction.getFunctionName());
-
-        return lambdaFunction
-                .withVersion(updateFunctionCodeResult.getVersion())
-                .withFunctionArn(updateFunctionCodeResult.getFunctionArn());
-    };
+        reportFailures(section, failures);
+    }
 
-    private ObjectMetadata getObjectMetadata(String bucket) {
+    /**
+     * Applies the pipeline of the async deploy engine to every configured lambda function. All functions are in
+     * flight at once; their steps run on asyncThreads threads and logs are written in configuration order once all
+     * functions are done.
+     *
+     * @param section label logged at the start of each function's section
+     * @param pipeline the steps to apply to each function, see {@link #async} and {@link #awaitFunctionAsync}
+     * @throws MojoExecutionException if the pipeline failed for any function
+     */
+    void forEachLambdaFunctionAsync(String section, Function<LambdaFunction, CompletableFuture<LambdaFunction>> pipeline)
+            throws MojoExecutionException {
+        Log mojoLog = getLog();
+        asyncExecutor = Executors.newFixedThreadPool(Math.max(1, asyncThreads));
+        asyncScheduler = Executors.newSingleThreadScheduledExecutor();
+        Map<String, Throwable> failures = new LinkedHashMap<>();
         try {
-            return s3Client.getObjectMetadata(bucket, fileName);
-        } catch (AmazonS3Exception ignored) {
-            return null;
-        }
-    }
+            List<BufferedLog> logs = new ArrayList<>();
+            List<CompletableFuture<Throwable>> results = new ArrayList<>();
+            lambdaFunctions.forEach(lambdaFunction -> {
+                BufferedLog log = new BufferedLog(mojoLog);
+                logs.add(log);
+                asyncLogs.put(lambdaFunction.getFunctionName(), log);
+                log.info("---- " + section + " " + lambdaFunction.getFunctionName() + " -----");
+                results.add(pipeline.apply(lambdaFunction).handle((result, error) -> {
+                    if (error == null) {
+                        return null;
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    log.error("Error processing " + lambdaFunction.getFunctionName(), cause);
+                    return cause;
+                }));
+            });
 
-    private String getBucket() {
-        if (s3Client.listBuckets().stream().noneMatch(p -> Objects.equals(p.getName(), s3Bucket))) {
-            getLog().info("Created bucket s3://" + s3Client.createBucket(s3Bucket).getName());
+            for (int i = 0; i < results.size(); i++) {
+                Throwable failure = results.get(i).get();
+                logs.get(i).flush();
+                if (failure != null) {
+                    failures.put(lambdaFunctions.get(i).getFunctionName(), failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while processing lambda functions", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            asyncScheduler.shutdownNow();
+            asyncExecutor.shutdownNow();
+            asyncLogs.clear();
         }
-        return s3Bucket;
+        reportFailures(section, failures);
     }
 
-    private PutObjectResult upload(File file) {
-        getLog().info("Uploading " + functionCode + " to AWS S3 bucket " + s3Bucket);
-        PutObjectRequest putObjectRequest = new PutObjectRequest(s3Bucket, fileName, file);
-        if (sse) {
-            if (sseKmsEncryptionKeyArn != null && sseKmsEncryptionKeyArn.length() > 0) {
-                putObjectRequest.setSSEAwsKeyManagementParams(new SSEAwsKeyManagementParams(sseKmsEncryptionKeyArn));
-            } else {
-                ObjectMetadata objectMetadata = new ObjectMetadata();
-                objectMetadata.setSSEAlgorithm(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
-                putObjectRequest.setMetadata(objectMetadata);
+    /**
+     * Runs a step on the executor of the deploy engine. While the step runs, it logs to the log of the function.
+     *
+     * @param lambdaFunction the function the step is applied to
+     * @param step the step, which may block on AWS calls but shouldn't wait for updates to finish
+     * @param <T> type of the step's result
+     * @return the step's result
+     */
+    <T> CompletableFuture<T> async(LambdaFunction lambdaFunction, Function<LambdaFunction, T> step) {
+        Log log = asyncLogs.get(lambdaFunction.getFunctionName());
+        return CompletableFuture.supplyAsync(() -> {
+            functionLog.set(log);
+            try {
+                return step.apply(lambdaFunction);
+            } finally {
+                functionLog.remove();
             }
-        }
-        PutObjectResult putObjectResult = s3Client.putObject(putObjectRequest);
-        getLog().info("Upload complete...");
-        return putObjectResult;
+        }, asyncExecutor);
     }
 
-    private void initAWSCredentials() throws MojoExecutionException {
-        DefaultAWSCredentialsProviderChain defaultChain = new DefaultAWSCredentialsProviderChain();
-        if (accessKey != null && secretKey != null) {
-            credentials = new BasicAWSCredentials(accessKey, secretKey);
-        } else if (defaultChain.getCredentials() != null) {
-            credentials = defaultChain.getCredentials();
-        }
+    /**
+     * @param operation the update being waited for, e.g. UpdateFunctionCode
+     * @return a step of the async deploy engine which completes once the function is ready again, without holding a
+     * thread while it waits
+     */
+    Function<LambdaFunction, CompletableFuture<LambdaFunction>> awaitFunctionAsync(String operation) {
+        return lambdaFunction -> awaitAsync(lambdaFunction, operation + " for " + lambdaFunction.getFunctionName(), null);
+    }
 
-        if (credentials == null) {
-            getLog().error("Unable to initialize AWS Credentials. Set BasicAWSCredentials with accessKey and secretKey or configure DefaultAWSCredentialsProviderChain");
-            throw new MojoExecutionException("AWS Credentials config error");
-        }
+    /**
+     * @param operation the operation which published the function's version, e.g. PublishVersion
+     * @return a step of the async deploy engine which completes once the function's version is ready to take traffic
+     */
+    Function<LambdaFunction, CompletableFuture<LambdaFunction>> awaitVersionAsync(String operation) {
+        return lambdaFunction -> isPublished(lambdaFunction)
+                ? awaitAsync(lambdaFunction, operation + " for " + lambdaFunction.getFunctionName() + ":" + lambdaFunction.getVersion(),
+                             lambdaFunction.getVersion())
+                : CompletableFuture.completedFuture(lambdaFunction);
     }
 
-    private void initFileName() {
-        String pattern = Pattern.quote(File.separator);
-        String[] pieces = functionCode.split(pattern);
-        if (!ofNullable(keyPrefix).orElse("/").endsWith("/")) {
-            keyPrefix += "/";
-        }
-        fileName = keyPrefix + pieces[pieces.length - 1];
+    private CompletableFuture<LambdaFunction> awaitAsync(LambdaFunction lambdaFunction, String description, String qualifier) {
+        return new Waiter(asyncLogs.get(lambdaFunction.getFunctionName()), waiterInitialDelay, waiterMaxDelay, waiterTimeout * 1000L)
+                .awaitAsync(description, pollFunction(lambdaFunction.getFunctionName(), qualifier), AbstractLambdaMojo::isFunctionReady,
+                            AbstractLambdaMojo::functionFailure, AbstractLambdaMojo::functionStatus, asyncScheduler, asyncExecutor)
+                .thenApply(config -> lambdaFunction);
+    }
+
+    /**
+     * @param send a step which starts an update of the function
+     * @param operation the update, e.g. UpdateFunctionCode
+     * @return a step of the deploy engine which sends the update and completes once the function is ready again
+     */
+    Function<LambdaFunction, CompletableFuture<LambdaFunction>> sendAndAwait(Function<LambdaFunction, LambdaFunction> send,
+                                                                             String operation) {
+        return lambdaFunction -> isAsyncEngine()
+                ? async(lambdaFunction, send).thenCompose(awaitFunctionAsync(operation))
+                : async(lambdaFunction, send.andThen(awaitFunction(operation)));
+    }
+
+    /**
+     * @param send a step which publishes a version of the function
+     * @param operation the operation, e.g. PublishVersion
+     * @return a step of the deploy engine which sends the operation and completes once both the function and the
+     * version it published are ready
+     */
+    Function<LambdaFunction, CompletableFuture<LambdaFunction>> sendAndAwaitVersion(Function<LambdaFunction, LambdaFunction> send,
+                                                                                    String operation) {
+        return lambdaFunction -> sendAndAwait(send, operation).apply(lambdaFunction)
+                .thenCompose(lf -> isAsyncEngine() ? awaitVersionAsync(operation).apply(lf) : async(lf, awaitVersion(operation)));
+    }
+
+    /**
+     * Waits until a resource of the function is done, on a thread of the deploy engine or, for the async engine,
+     * without holding a thread.
+     *
+     * @param lambdaFunction the function whose log the waiter writes to
+     * @param description what is being waited for, used in log and error messages
+     * @param poll reads the resource
+     * @param done whether the resource is done
+     * @param failure the reason the resource failed, or null if it hasn't
+     * @param status describes the resource for the log
+     * @param <T> type of the resource
+     * @return the resource once it is done
+     */
+    <T> CompletableFuture<T> await(LambdaFunction lambdaFunction, String description, Supplier<T> poll, Predicate<T> done,
+                                   Function<T, String> failure, Function<T, String> status) {
+        if (isAsyncEngine()) {
+            return new Waiter(asyncLogs.get(lambdaFunction.getFunctionName()), waiterInitialDelay, waiterMaxDelay, waiterTimeout * 1000L)
+                    .awaitAsync(description, poll, done, failure, status, asyncScheduler, asyncExecutor);
+        }
+        return async(lambdaFunction, lf -> waiter().await(description, poll, done, failure, status));
+    }
+
+    boolean isAsyncEngine() {
+        return "async".equalsIgnoreCase(deployEngine);
+    }
+
+    private void reportFailures(String section, Map<String, Throwable> failures) throws MojoExecutionException {
+        ofNullable(concurrencyHandler).ifPresent(handler -> getLog().info("AWS API concurrency limits: " + handler.describeLimits()));
+
+        if (!failures.isEmpty()) {
+            String report = failures.entrySet().stream()
+                                    .map(failure -> "  " + failure.getKey() + ": " + failure.getValue().getMessage())
+                                    .collect(Collectors.joining("\n", String.format("%s failed for %d of %d lambda functions:\n",
+                                                                                    section, failures.size(), lambdaFunctions.size()), ""));
+            getLog().error(report);
+            throw new MojoExecutionException(report);
+        }
+    }
+
+    /**
+     * Makes the deliverable available to Lambda: uploads it to S3 unless it is sent directly.
+     *
+     * @throws Exception if the upload fails
+     */
+    void uploadCode() throws Exception {
+        if (isDirectUpload()) {
+            getLog().info(fileName + " is sent to AWS Lambda directly. Not uploading to S3...");
+            return;
+        }
+        uploadJarToS3();
+        ofNullable(uploadedTo).ifPresent(uploaded -> uploaded.complete(s3Bucket));
+    }
+
+    /**
+     * @return whether the deliverable is sent with the requests that create or update functions instead of through S3
+     */
+    boolean isDirectUpload() {
+        if ("direct".equalsIgnoreCase(codeUploadMode)) {
+            return true;
+        }
+        if ("s3".equalsIgnoreCase(codeUploadMode)) {
+            return false;
+        }
+        return isBelowDirectUploadThreshold(new File(functionCode));
+    }
+
+    private boolean isBelowDirectUploadThreshold(File file) {
+        return file.length() < directUploadThreshold * MB;
+    }
+
+    /**
+     * @return the code of a function to be created, in S3 or sent directly
+     */
+    FunctionCode functionCodeLocation() {
+        return isDirectUpload()
+                ? new FunctionCode().withZipFile(zipFile())
+                : new FunctionCode().withS3Bucket(s3Bucket).withS3Key(fileName).withS3ObjectVersion(s3ObjectVersion);
+    }
+
+    /**
+     * @return an update to the code of a function, in S3 or sent directly
+     */
+    UpdateFunctionCodeRequest functionCodeUpdate() {
+        return isDirectUpload()
+                ? new UpdateFunctionCodeRequest().withZipFile(zipFile())
+                : new UpdateFunctionCodeRequest().withS3Bucket(s3Bucket).withS3Key(fileName).withS3ObjectVersion(s3ObjectVersion);
+    }
+
+    /*
+     * The deliverable is mapped into memory once. Each request gets its own view of the mapping, so requests can be
+     * sent concurrently and retried without copying the bytes onto the heap.
+     */
+    private ByteBuffer zipFile() {
+        return functionCodeBytes.get().duplicate();
+    }
+
+    private ByteBuffer mapFunctionCode() {
+        return map(new File(functionCode));
+    }
+
+    /*
+     * Maps a zip file into memory instead of reading it onto the heap.
+     */
+    private static ByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    void uploadJarToS3() throws Exception {
+        if (contentAddressedKeys) {
+            // Only a recorded version is known to still be there: deleting the key of a versioned object keeps the
+            // version, but an object of an unversioned bucket may have been deleted since it was recorded.
+            ArtifactIndex.Entry uploaded = ArtifactIndex.load(artifactIndex).get(s3Bucket, fileName);
+            if (uploaded != null && uploaded.getVersionId() != null) {
+                s3ObjectVersion = uploaded.getVersionId();
+                getLog().info(fileName + " was uploaded to AWS S3 bucket " + s3Bucket + " before. Not uploading...");
+                return;
+            }
+        }
+
+        String bucket = getBucket();
+        File file = new File(functionCode);
+        ArtifactDigest digest = artifactDigest();
+        getLog().debug(String.format("Local file's MD5 hash is %s.", digest.getMd5()));
+
+        ObjectMetadata remoteMetadata = getObjectMetadata(bucket);
+        if (remoteMetadata != null && isUpToDate(remoteMetadata, digest)) {
+            getLog().info(fileName + " is up to date in AWS S3 bucket " + s3Bucket + ". Not uploading...");
+            s3ObjectVersion = remoteMetadata.getVersionId();
+        } else {
+            CopyObjectResult copy = copyFromSourceBucket(digest.getMd5());
+            s3ObjectVersion = copy != null ? copy.getVersionId() : upload(file, fileName, digest.getMd5()).getVersionId();
+        }
+
+        if (contentAddressedKeys) {
+            ArtifactIndex.addObject(artifactIndex, s3Bucket, fileName, s3ObjectVersion);
+        }
+    }
+
+    /**
+     * Makes sure a version of the dependency layer holding the current dependencies exists, publishing one if none
+     * does, so that functions can be created and updated with it. Versions are recognized by the hash of their
+     * dependencies in their description.
+     *
+     * @throws Exception if the layer can't be listed, uploaded or published
+     */
+    void publishDependencyLayer() throws Exception {
+        if (dependenciesSha256 == null) {
+            return;
+        }
+        findDependencyLayer();
+        if (dependencyLayerArn != null) {
+            getLog().info("Dependencies are unchanged since " + dependencyLayerArn + " was published. Not publishing...");
+            return;
+        }
+
+        LayerVersionContentInput content = new LayerVersionContentInput();
+        if (!"s3".equalsIgnoreCase(codeUploadMode) && isBelowDirectUploadThreshold(dependencyLayerZip)) {
+            content.setZipFile(map(dependencyLayerZip));
+        } else {
+            String key = keyPrefix + dependencyLayerName + "-" + dependenciesSha256 + ".zip";
+            String md5;
+            try (InputStream in = new FileInputStream(dependencyLayerZip)) {
+                md5 = DigestUtils.md5Hex(in);
+            }
+            getBucket();
+            UploadResult uploaded = upload(dependencyLayerZip, key, md5);
+            content.withS3Bucket(s3Bucket).withS3Key(key).withS3ObjectVersion(uploaded.getVersionId());
+        }
+        getLog().info("About to publish a new version of layer " + dependencyLayerName);
+        PublishLayerVersionResult published = lambdaClient().publishLayerVersion(new PublishLayerVersionRequest()
+                .withLayerName(dependencyLayerName)
+                .withDescription(LAYER_DESCRIPTION_PREFIX + dependenciesSha256)
+                .withCompatibleRuntimes(runtime)
+                .withContent(content));
+        dependencyLayerArn = published.getLayerVersionArn();
+        getLog().info("Layer version " + dependencyLayerArn + " published.");
+    }
+
+    /**
+     * Looks up the version of the dependency layer holding the current dependencies, without publishing one.
+     */
+    void findDependencyLayer() {
+        if (dependenciesSha256 != null) {
+            dependencyLayerArn = findDependencyLayerVersion(LAYER_DESCRIPTION_PREFIX + dependenciesSha256);
+        }
+    }
+
+    private String findDependencyLayerVersion(String description) {
+        ListLayerVersionsRequest request = new ListLayerVersionsRequest().withLayerName(dependencyLayerName);
+        try {
+            do {
+                ListLayerVersionsResult result = lambdaClient().listLayerVersions(request);
+                Optional<String> found = result.getLayerVersions().stream()
+                                               .filter(layerVersion -> description.equals(layerVersion.getDescription()))
+                                               .map(LayerVersionsListItem::getLayerVersionArn)
+                                               .findFirst();
+                if (found.isPresent()) {
+                    return found.get();
+                }
+                request.setMarker(result.getNextMarker());
+            } while (request.getMarker() != null);
+        } catch (ResourceNotFoundException ignored) {
+        }
+        return null;
+    }
+
+    /**
+     * @param lambdaFunction a function
+     * @return the layers of the function with the current versions of the layers this plugin manages, the dependency
+     *         layer and the Lambda Insights extension, in place of any other versions of them, or null if the
+     *         function has none of them and needs none
+     */
+    List<String> functionLayers(LambdaFunction lambdaFunction) {
+        String insightsLayer = insightsLayerArn(lambdaFunction);
+        List<String> current = currentLayers(lambdaFunction);
+        if (dependencyLayerArn == null && insightsLayer == null && current.stream().noneMatch(AbstractLambdaMojo::isInsightsLayer)) {
+            return null;
+        }
+        String dependencyLayer = ofNullable(dependencyLayerArn).map(AbstractLambdaMojo::unversionedLayerArn).orElse(null);
+        List<String> layers = current.stream()
+                                     .filter(arn -> !unversionedLayerArn(arn).equals(dependencyLayer))
+                                     .filter(arn -> !isInsightsLayer(arn))
+                                     .collect(toList());
+        ofNullable(dependencyLayerArn).ifPresent(layers::add);
+        ofNullable(insightsLayer).ifPresent(layers::add);
+        return layers;
+    }
+
+    /**
+     * @param lambdaFunction a function
+     * @return whether the function has a different version of the Lambda Insights extension than it needs, or has one
+     *         it doesn't need
+     */
+    boolean isInsightsLayerChanged(LambdaFunction lambdaFunction) {
+        String insightsLayer = insightsLayerArn(lambdaFunction);
+        List<String> current = currentLayers(lambdaFunction);
+        return insightsLayer == null ? current.stream().anyMatch(AbstractLambdaMojo::isInsightsLayer) : !current.contains(insightsLayer);
+    }
+
+    /*
+     * The extension is published by AWS in every region, for either architecture.
+     */
+    private String insightsLayerArn(LambdaFunction lambdaFunction) {
+        if (!Boolean.TRUE.equals(lambdaFunction.isLambdaInsights())) {
+            return null;
+        }
+        return String.format("arn:aws:lambda:%s:%s:layer:LambdaInsightsExtension%s:%d", regionName, LAMBDA_INSIGHTS_ACCOUNT,
+                             "arm64".equals(lambdaFunction.getArchitecture()) ? "-Arm64" : "", lambdaInsightsLayerVersion);
+    }
+
+    private static boolean isInsightsLayer(String layerVersionArn) {
+        return layerVersionArn.contains(":" + LAMBDA_INSIGHTS_ACCOUNT + ":layer:LambdaInsightsExtension");
+    }
+
+    /**
+     * @param lambdaFunction a function
+     * @return whether the function already uses the current dependency layer version, or doesn't need one
+     */
+    boolean isDependencyLayerAttached(LambdaFunction lambdaFunction) {
+        return dependenciesSha256 == null
+               || dependencyLayerArn != null && currentLayers(lambdaFunction).contains(dependencyLayerArn);
+    }
+
+    private List<String> currentLayers(LambdaFunction lambdaFunction) {
+        return ofNullable(remoteState.get(lambdaFunction).getConfiguration())
+                .map(FunctionConfiguration::getLayers)
+                .map(layers -> layers.stream().map(Layer::getArn).collect(toList()))
+                .orElse(emptyList());
+    }
+
+    private static String unversionedLayerArn(String layerVersionArn) {
+        return layerVersionArn.substring(0, layerVersionArn.lastIndexOf(':'));
+    }
+
+    /**
+     * Sends the function's layers with the current dependency layer version without waiting for the update to finish.
+     */
+    Function<LambdaFunction, LambdaFunction> sendDependencyLayer = (LambdaFunction lambdaFunction) -> {
+        getLog().info("About to attach " + dependencyLayerArn + " to " + lambdaFunction.getFunctionName());
+        lambdaClient().updateFunctionConfiguration(new UpdateFunctionConfigurationRequest()
+                .withFunctionName(lambdaFunction.getFunctionName())
+                .withLayers(functionLayers(lambdaFunction)));
+        return lambdaFunction;
+    };
+
+    /**
+     * Digests of the deliverable, computed at most once per build and cached on disk between builds.
+     *
+     * @return the digests of functionCode
+     * @throws IOException if the deliverable cannot be read
+     */
+    ArtifactDigest artifactDigest() throws IOException {
+        File file = new File(functionCode);
+        return ArtifactDigest.of(file, uploadPartSize(file));
+    }
+
+    /*
+     * Objects uploaded by this plugin carry the MD5 of the whole file in their user metadata. For other objects fall
+     * back to the ETag, which is either a plain MD5 or, for multipart uploads, the MD5 of the part MD5s.
+     */
+    private boolean isUpToDate(ObjectMetadata remoteMetadata, ArtifactDigest digest) {
+        String remoteMD5 = remoteMetadata.getUserMetaDataOf(USER_METADATA_MD5);
+        if (remoteMD5 != null) {
+            getLog().info(fileName + " exists in S3 with MD5 hash " + remoteMD5);
+            return digest.getMd5().equals(remoteMD5);
+        }
+
+        String eTag = remoteMetadata.getETag();
+        getLog().info(fileName + " exists in S3 with ETag " + eTag);
+        if (S3ETags.partCount(eTag) < 0) {
+            return digest.getMd5().equals(eTag);
+        }
+        return eTag.equals(digest.getMultipartETag());
+    }
+
+    /**
+     * Sends the new code of the function without waiting for the update to finish.
+     */
+    Function<LambdaFunction, LambdaFunction> sendFunctionCode = (LambdaFunction lambdaFunction) ->
+            sendFunctionCode(lambdaFunction, lambdaFunction.isPublish());
+
+    /**
+     * Sends the new code of the function without waiting for the update to finish.
+     *
+     * @param lambdaFunction the function
+     * @param publish whether to publish a version of the function along with its code
+     * @return the function with the version the update resulted in
+     */
+    LambdaFunction sendFunctionCode(LambdaFunction lambdaFunction, boolean publish) {
+        getLog().info("About to update functionCode for " + lambdaFunction.getFunctionName());
+        UpdateFunctionCodeRequest updateFunctionRequest = functionCodeUpdate()
+                .withFunctionName(lambdaFunction.getFunctionName())
+                .withArchitectures(lambdaFunction.getArchitecture())
+                .withPublish(publish);
+        UpdateFunctionCodeResult updateFunctionCodeResult = lambdaClient().updateFunctionCode(updateFunctionRequest);
+
+        return lambdaFunction
+                .withVersion(updateFunctionCodeResult.getVersion())
+                .withFunctionArn(updateFunctionCodeResult.getFunctionArn());
+    }
+
+    // wait until the UpdateFunctionCode finishes processing to avoid com.amazonaws.services.lambda.model.ResourceConflictException. See: https://docs.aws.amazon.com/lambda/latest/dg/functions-states.html
+    Function<LambdaFunction, LambdaFunction> updateFunctionCode = sendFunctionCode.andThen(awaitFunction("UpdateFunctionCode"));
+
+    /**
+     * @param operation the update being waited for, e.g. UpdateFunctionCode
+     * @return a step which waits until the function is ready again
+     */
+    Function<LambdaFunction, LambdaFunction> awaitFunction(String operation) {
+        return lambdaFunction -> {
+            waitForFunction(operation + " for " + lambdaFunction.getFunctionName(), lambdaFunction.getFunctionName(), null);
+            getLog().info(operation + " finished successfully for " + lambdaFunction.getFunctionName());
+            return lambdaFunction;
+        };
+    }
+
+    /**
+     * @param operation the operation which published the function's version, e.g. PublishVersion
+     * @return a step which waits until the function's version is ready to take traffic. Versions of functions with
+     * SnapStart are ready once their snapshot has been taken.
+     */
+    Function<LambdaFunction, LambdaFunction> awaitVersion(String operation) {
+        return lambdaFunction -> {
+            if (!isPublished(lambdaFunction)) {
+                return lambdaFunction;
+            }
+            waitForFunction(operation + " for " + lambdaFunction.getFunctionName() + ":" + lambdaFunction.getVersion(),
+                            lambdaFunction.getFunctionName(), lambdaFunction.getVersion());
+            getLog().info("Version " + lambdaFunction.getVersion() + " of " + lambdaFunction.getFunctionName() + " is ready");
+            return lambdaFunction;
+        };
+    }
+
+    private static boolean isPublished(LambdaFunction lambdaFunction) {
+        return lambdaFunction.getVersion() != null && !"$LATEST".equals(lambdaFunction.getVersion());
+    }
+
+    Waiter waiter() {
+        return new Waiter(getLog(), waiterInitialDelay, waiterMaxDelay, waiterTimeout * 1000L);
+    }
+
+    /**
+     * Waits until the function, or the given version of it, is Active and its last update was Successful.
+     *
+     * @param description what is being waited for, used in log and error messages
+     * @param functionName name or ARN of the function
+     * @param qualifier version or alias, or null for $LATEST
+     * @return the configuration of the function once it is ready
+     */
+    GetFunctionConfigurationResult waitForFunction(String description, String functionName, String qualifier) {
+        return waiter().await(description, pollFunction(functionName, qualifier), AbstractLambdaMojo::isFunctionReady,
+                              AbstractLambdaMojo::functionFailure, AbstractLambdaMojo::functionStatus);
+    }
+
+    private Supplier<GetFunctionConfigurationResult> pollFunction(String functionName, String qualifier) {
+        return () -> lambdaClient().getFunctionConfiguration(new GetFunctionConfigurationRequest()
+                .withFunctionName(functionName)
+                .withQualifier(qualifier));
+    }
+
+    static boolean isFunctionReady(GetFunctionConfigurationResult config) {
+        return "Active".equals(config.getState())
+                && (config.getLastUpdateStatus() == null || "Successful".equals(config.getLastUpdateStatus()));
+    }
+
+    static String functionFailure(GetFunctionConfigurationResult config) {
+        if ("Failed".equals(config.getState())) {
+            return config.getStateReason();
+        }
+        return "Failed".equals(config.getLastUpdateStatus()) ? config.getLastUpdateStatusReason() : null;
+    }
+
+    static String functionStatus(GetFunctionConfigurationResult config) {
+        if (config.getSnapStart() != null && !"None".equals(config.getSnapStart().getApplyOn())) {
+            return String.format("State: %s, LastUpdateStatus: %s, SnapStart: %s", config.getState(),
+                                 config.getLastUpdateStatus(), config.getSnapStart().getOptimizationStatus());
+        }
+        return String.format("State: %s, LastUpdateStatus: %s", config.getState(), config.getLastUpdateStatus());
+    }
+
+    /**
+     * Waits until an event source mapping has finished being created or updated.
+     *
+     * @param description what is being waited for, used in log and error messages
+     * @param uuid identifier of the event source mapping
+     */
+    void waitForEventSourceMapping(String description, String uuid) {
+        waiter().await(description,
+            () -> lambdaClient().getEventSourceMapping(new GetEventSourceMappingRequest().withUUID(uuid)),
+            mapping -> "Enabled".equals(mapping.getState()) || "Disabled".equals(mapping.getState()),
+            mapping -> null,
+            mapping -> "State: " + mapping.getState());
+    }
+
+    private ObjectMetadata getObjectMetadata(String bucket) {
+        try {
+            return s3Client().getObjectMetadata(bucket, fileName);
+        } catch (AmazonS3Exception ignored) {
+            return null;
+        }
+    }
+
+    private String getBucket() {
+        if (s3Client().listBuckets().stream().noneMatch(p -> Objects.equals(p.getName(), s3Bucket))) {
+            getLog().info("Created bucket s3://" + s3Client().createBucket(s3Bucket).getName());
+        }
+        return s3Bucket;
+    }
+
+    private long uploadPartSize(File file) {
+        return S3ETags.partSize(file.length(), multipartUploadPartSize * MB);
+    }
+
+    private UploadResult upload(File file, String key, String md5) throws InterruptedException {
+        getLog().info("Uploading " + file + " to AWS S3 bucket " + s3Bucket);
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.addUserMetadata(USER_METADATA_MD5, md5);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(s3Bucket, key, file).withMetadata(objectMetadata);
+        if (sse) {
+            if (sseKmsEncryptionKeyArn != null && sseKmsEncryptionKeyArn.length() > 0) {
+                putObjectRequest.setSSEAwsKeyManagementParams(new SSEAwsKeyManagementParams(sseKmsEncryptionKeyArn));
+            } else {
+                objectMetadata.setSSEAlgorithm(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+            }
+        }
+
+        // Files above the threshold are split into parts which are uploaded in parallel.
+        TransferManager transferManager = TransferManagerBuilder.standard()
+                .withS3Client(s3Client())
+                .withMultipartUploadThreshold(multipartUploadThreshold * MB)
+                .withMinimumUploadPartSize(uploadPartSize(file))
+                .withExecutorFactory(() -> Executors.newFixedThreadPool(Math.max(1, uploadThreads)))
+                .build();
+        try {
+            UploadResult uploadResult = transferManager.upload(putObjectRequest).waitForUploadResult();
+            getLog().info("Upload complete...");
+            return uploadResult;
+        } finally {
+            transferManager.shutdownNow(false);
+        }
+    }
+
+    /*
+     * Copies the deliverable from the bucket of another region, once it has been uploaded there. Returns null if
+     * there is nothing to copy, so that the deliverable is uploaded instead.
+     */
+    private CopyObjectResult copyFromSourceBucket(String md5) {
+        String source = ofNullable(copySource).map(CompletableFuture::join).orElse(null);
+        if (source == null) {
+            return null;
+        }
+        getLog().info("Copying " + fileName + " from AWS S3 bucket " + source + " to " + s3Bucket);
+        CopyObjectRequest copyObjectRequest = new CopyObjectRequest(source, fileName, s3Bucket, fileName);
+        if (sse) {
+            // Replacing the metadata to encrypt the copy drops the user metadata, so the MD5 is set again.
+            ObjectMetadata objectMetadata = new ObjectMetadata();
+            objectMetadata.addUserMetadata(USER_METADATA_MD5, md5);
+            if (sseKmsEncryptionKeyArn != null && sseKmsEncryptionKeyArn.length() > 0) {
+                copyObjectRequest.setSSEAwsKeyManagementParams(new SSEAwsKeyManagementParams(sseKmsEncryptionKeyArn));
+            } else {
+                objectMetadata.setSSEAlgorithm(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+            }
+            copyObjectRequest.setNewObjectMetadata(objectMetadata);
+        }
+        try {
+            CopyObjectResult copyObjectResult = s3Client().copyObject(copyObjectRequest);
+            getLog().info("Copy complete...");
+            return copyObjectResult;
+        } catch (AmazonServiceException e) {
+            getLog().warn("Could not copy " + fileName + " from AWS S3 bucket " + source + ", uploading it instead: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Runs this goal for every one of regions at the same time, each with its own copy of this mojo. The first region
+     * uploads the deliverable and the other regions copy it. Output is written one region at a time.
+     *
+     * @throws MojoExecutionException if the goal failed in any region
+     */
+    void forEachRegion() throws MojoExecutionException {
+        Log mojoLog = getLog();
+        CompletableFuture<String> uploaded = new CompletableFuture<>();
+        List<AbstractLambdaMojo> mojos = new ArrayList<>();
+        List<BufferedLog> logs = new ArrayList<>();
+        try {
+            // Slim, split and digest the deliverable once, before the regions need it concurrently.
+            initSlimFunctionCode();
+            initDependencyLayer();
+            if (new File(functionCode).isFile()) {
+                artifactDigest();
+            }
+            for (String region : regions) {
+                BufferedLog log = new BufferedLog(mojoLog);
+                AbstractLambdaMojo mojo = forRegion(region, log);
+                if (mojos.isEmpty()) {
+                    mojo.uploadedTo = uploaded;
+                } else {
+                    mojo.copySource = uploaded;
+                }
+                mojos.add(mojo);
+                logs.add(log);
+            }
+        } catch (IOException | ReflectiveOperationException e) {
+            throw new MojoExecutionException("Could not prepare the deployment to " + regions + ": " + e.getMessage(), e);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(mojos.size());
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        try {
+            List<Future<Throwable>> results = new ArrayList<>();
+            for (AbstractLambdaMojo mojo : mojos) {
+                results.add(executor.submit(() -> {
+                    try {
+                        mojo.getLog().info("==== Region " + mojo.regionName + " ====");
+                        mojo.execute();
+                        return null;
+                    } catch (Exception e) {
+                        return e;
+                    } finally {
+                        if (mojo.uploadedTo != null) {
+                            // Let the other regions upload the deliverable themselves if this one didn't.
+                            mojo.uploadedTo.complete(null);
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Throwable failure = results.get(i).get();
+                logs.get(i).flush();
+                if (failure != null) {
+                    failures.put(mojos.get(i).regionName, failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while processing regions", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!failures.isEmpty()) {
+            String report = failures.entrySet().stream()
+                                    .map(failure -> "  " + failure.getKey() + ": " + failure.getValue().getMessage())
+                                    .collect(Collectors.joining("\n", String.format("Failed in %d of %d regions:\n",
+                                                                                    failures.size(), mojos.size()), ""));
+            getLog().error(report);
+            throw new MojoExecutionException(report);
+        }
+    }
+
+    /*
+     * A copy of this mojo, with its own functions, clients and state, which works on a single region.
+     */
+    private AbstractLambdaMojo forRegion(String region, Log log) throws ReflectiveOperationException {
+        AbstractLambdaMojo mojo = getClass().getDeclaredConstructor().newInstance();
+        for (Field field : getClass().getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+                field.set(mojo, field.get(this));
+            }
+        }
+        mojo.setLog(log);
+        mojo.setPluginContext(getPluginContext());
+        mojo.regions = null;
+        mojo.regionName = region;
+        mojo.s3Bucket = s3Bucket + "-" + region;
+        mojo.lambdaFunctions = ofNullable(lambdaFunctions).map(functions -> functions.stream()
+                .map(lambdaFunction -> JsonUtil.mapper.convertValue(lambdaFunction, LambdaFunction.class))
+                .collect(toList())).orElse(null);
+        return mojo;
+    }
+
+    boolean isMultiRegion() {
+        return regions != null && !regions.isEmpty();
+    }
+
+    private void initAWSCredentials() throws MojoExecutionException {
+        if (accessKey != null && secretKey != null) {
+            credentials = new BasicAWSCredentials(accessKey, secretKey);
+        } else {
+            // The shared chain remembers which provider worked, so later modules don't search the chain again.
+            credentials = DefaultAWSCredentialsProviderChain.getInstance().getCredentials();
+        }
+
+        if (credentials == null) {
+            getLog().error("Unable to initialize AWS Credentials. Set BasicAWSCredentials with accessKey and secretKey or configure DefaultAWSCredentialsProviderChain");
+            throw new MojoExecutionException("AWS Credentials config error");
+        }
+    }
+
+    /*
+     * Replaces the deliverable with its slimmed copy. The copy has the same file name, so its S3 key doesn't change.
+     */
+    private void initSlimFunctionCode() throws IOException {
+        if (!slim) {
+            return;
+        }
+        File source = new File(functionCode);
+        File target = new File(slimDirectory, source.getName());
+        Map<String, Long> saved = new ArtifactSlimmer(slimIncludes, slimExcludes).slim(source, target);
+        getLog().info(String.format("Slimmed %s from %s to %s", source.getName(),
+                                    ArtifactSlimmer.format(source.length()), ArtifactSlimmer.format(target.length())));
+        saved.forEach((reason, bytes) -> getLog().info("    " + reason + ": " + ArtifactSlimmer.format(bytes)));
+        functionCode = target.getPath();
+        slim = false;
+    }
+
+    /*
+     * Replaces the deliverable with the project's part of it and writes the dependencies to a layer zip. The function
+     * zip has the deliverable's file name, so its S3 key doesn't change.
+     */
+    private void initDependencyLayer() throws IOException {
+        if (!splitDependencies) {
+            return;
+        }
+        if (!classesDirectory.isDirectory()) {
+            getLog().warn(classesDirectory + " does not exist. Not splitting dependencies from " + functionCode + "...");
+            return;
+        }
+        File source = new File(functionCode);
+        File functionZip = new File(layerDirectory, source.getName());
+        File layerZip = new File(layerDirectory, dependencyLayerName + ".zip");
+        DependencySplitter.Split split = new DependencySplitter(classesDirectory).split(source, functionZip, layerZip);
+        functionCode = functionZip.getPath();
+        // The split replaced the deliverable, which mustn't be split again, e.g. by the mojo of each region.
+        splitDependencies = false;
+        if (split.getDependenciesSha256() == null) {
+            getLog().info(source.getName() + " has no dependencies to split off.");
+            return;
+        }
+        getLog().info(String.format("Split %s into %d entries of the function (%s) and %d of the dependency layer (%s)",
+                                    source.getName(), split.getFunctionEntries(), ArtifactSlimmer.format(functionZip.length()),
+                                    split.getDependencyEntries(), ArtifactSlimmer.format(layerZip.length())));
+        dependencyLayerZip = layerZip;
+        dependenciesSha256 = split.getDependenciesSha256();
+    }
+
+    private void initFileName() throws IOException {
+        String pattern = Pattern.quote(File.separator);
+        String[] pieces = functionCode.split(pattern);
+        if (!ofNullable(keyPrefix).orElse("/").endsWith("/")) {
+            keyPrefix += "/";
+        }
+        String name = pieces[pieces.length - 1];
+        if (contentAddressedKeys) {
+            // The hash names the content, the extension keeps the kind of archive recognizable.
+            int extension = name.lastIndexOf('.');
+            fileName = keyPrefix + artifactDigest().getSha256() + (extension < 0 ? "" : name.substring(extension));
+        } else {
+            fileName = keyPrefix + name;
+        }
     }
 
     private void initVersion() {
@@ -390,25 +1646,91 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
     
     @SuppressWarnings("rawtypes")
     BiFunction<AwsClientBuilder, ClientConfiguration, AmazonWebServiceClient> clientFactory = (builder, clientConfig) -> {
-        Regions region = Regions.fromName(regionName);
+        String endpoint = endpoint(builder);
+        if (endpoint != null) {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, regionName));
+        } else {
+            builder.withRegion(Regions.fromName(regionName));
+        }
         
-        return (AmazonWebServiceClient) of(credentials)
-        .map(credentials -> builder.withCredentials(new AWSStaticCredentialsProvider(credentials))
-                                   .withClientConfiguration(clientConfig)
-                                   .withRegion(region).build())
-        .orElse(builder.withRegion(region).withCredentials(new DefaultAWSCredentialsProviderChain()).build());
+        // Only one client is built per service, so that no connection pool is created in vain.
+        AWSCredentialsProvider credentialsProvider = credentials != null
+                ? new AWSStaticCredentialsProvider(credentials)
+                : new DefaultAWSCredentialsProviderChain();
+        return (AmazonWebServiceClient) builder.withCredentials(credentialsProvider)
+                                               .withClientConfiguration(clientConfig)
+                                               .withRequestHandlers(concurrencyHandler).build();
     };
 
+    /*
+     * The endpoint overriding the region's for the service the builder builds clients of, or null.
+     */
+    private String endpoint(AwsClientBuilder<?, ?> builder) {
+        return builder instanceof AWSLambdaClientBuilder ? lambdaEndpoint : null;
+    }
+
     private void initAWSClients() {
-        ClientConfiguration clientConfig = clientConfiguration();
-        s3Client = (AmazonS3) clientFactory.apply(AmazonS3ClientBuilder.standard(), clientConfig);
-        lambdaClient = (AWSLambda) clientFactory.apply(AWSLambdaClientBuilder.standard(), clientConfig);
-        snsClient = (AmazonSNS) clientFactory.apply(AmazonSNSClientBuilder.standard(), clientConfig);
-        eventsClient = (AmazonCloudWatchEvents) clientFactory.apply(AmazonCloudWatchEventsClientBuilder.standard(), clientConfig);
-        dynamoDBStreamsClient = (AmazonDynamoDBStreams) clientFactory.apply(AmazonDynamoDBStreamsClientBuilder.standard(), clientConfig);
-        kinesisClient = (AmazonKinesis) clientFactory.apply(AmazonKinesisClientBuilder.standard(), clientConfig);
-        cloudWatchEventsClient = (AmazonCloudWatchEvents) clientFactory.apply(AmazonCloudWatchEventsClientBuilder.standard(), clientConfig);
-        sqsClient = (AmazonSQS) clientFactory.apply(AmazonSQSClientBuilder.standard(), clientConfig);
+        threadMojoLog.set(getLog());
+        lastMojoLog = getLog();
+        // The handler is shared by all mojos of the build, so it logs to whichever one made the call.
+        concurrencyHandler = AWSClientRegistry.concurrencyHandler(
+                () -> new AdaptiveConcurrencyHandler(AbstractLambdaMojo::currentLog, apiConcurrency, maxApiConcurrency));
+    }
+
+    /**
+     * <p>
+     * Clients are built the first time they are used, so a build only pays for the services its functions need.
+     * </p>
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Lazy<T> client(Supplier<AwsClientBuilder<?, ?>> builder) {
+        return new Lazy<>(() -> {
+            AwsClientBuilder<?, ?> clientBuilder = builder.get();
+            return (T) AWSClientRegistry.client(clientKey(clientBuilder),
+                                                () -> clientFactory.apply(clientBuilder, clientConfiguration()));
+        });
+    }
+
+    /**
+     * <p>
+     * Clients are shared with other modules of the build which use the same service, region, credentials and
+     * client configuration.
+     * </p>
+     */
+    private String clientKey(AwsClientBuilder<?, ?> builder) {
+        String secret = credentials.getAWSSecretKey() + (credentials instanceof AWSSessionCredentials
+                ? ((AWSSessionCredentials) credentials).getSessionToken() : "");
+        return String.join("|", builder.getClass().getName(), regionName, String.valueOf(endpoint(builder)), credentials.getAWSAccessKeyId(),
+                            DigestUtils.sha256Hex(secret),
+                            String.valueOf(new TreeMap<>(ofNullable(clientConfiguration).orElse(new HashMap<>()))));
+    }
+
+    public AmazonS3 s3Client() {
+        return s3Client.get();
+    }
+
+    public AWSLambda lambdaClient() {
+        return lambdaClient.get();
+    }
+
+    public AmazonSNS snsClient() {
+        return snsClient.get();
+    }
+
+    public AmazonCloudWatchEvents eventsClient() {
+        return eventsClient.get();
+    }
+
+    public AmazonDynamoDBStreams dynamoDBStreamsClient() {
+        return dynamoDBStreamsClient.get();
+    }
+
+    public AmazonKinesis kinesisClient() {
+        return kinesisClient.get();
+    }
+
+    public AmazonSQS sqsClient() {
+        return sqsClient.get();
     }
 
     private void initLambdaFunctionsConfiguration() throws MojoExecutionException, IOException {
@@ -425,12 +1747,21 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
                           .withDescription(ofNullable(lambdaFunction.getDescription()).orElse(""))
                           .withTimeout(ofNullable(lambdaFunction.getTimeout()).orElse(timeout))
                           .withMemorySize(ofNullable(lambdaFunction.getMemorySize()).orElse(memorySize))
+                          .withArchitecture(ofNullable(lambdaFunction.getArchitecture()).orElse(architecture))
+                          .withEphemeralStorage(ofNullable(lambdaFunction.getEphemeralStorage()).orElse(ephemeralStorage))
+                          .withTracingMode(ofNullable(lambdaFunction.getTracingMode()).orElse(tracingMode))
+                          .withLambdaInsights(ofNullable(lambdaFunction.isLambdaInsights()).orElse(lambdaInsights))
                           .withSubnetIds(ofNullable(vpcSubnetIds).orElse(new ArrayList<>()))
                           .withSecurityGroupsIds(ofNullable(vpcSecurityGroupIds).orElse(new ArrayList<>()))
                           .withVersion(version)
-                          .withPublish(ofNullable(lambdaFunction.isPublish()).orElse(publish))
+                          .withSnapStart(ofNullable(lambdaFunction.isSnapStart()).orElse(snapStart))
+                          .withPublish(lambdaFunction.isSnapStart() || ofNullable(lambdaFunction.isPublish()).orElse(publish))
                           .withLambdaRoleArn(ofNullable(lambdaFunction.getLambdaRoleArn()).orElse(lambdaRoleArn))
                           .withAliases(aliases(lambdaFunction.isPublish()))
+                          .withReservedConcurrency(ofNullable(lambdaFunction.getReservedConcurrency()).orElse(reservedConcurrency))
+                          .withProvisionedConcurrency(provisionedConcurrency(lambdaFunction))
+                          .withWarmUpConcurrency(ofNullable(lambdaFunction.getWarmUpConcurrency()).orElse(warmUpConcurrency))
+                          .withWarmUpPayload(ofNullable(lambdaFunction.getWarmUpPayload()).orElse(warmUpPayload))
                           .withTriggers(ofNullable(lambdaFunction.getTriggers()).map(triggers -> triggers.stream()
                                                                                                          .map(trigger -> {
                                                                                                              trigger.withRuleName(addSuffix(trigger.getRuleName()));
@@ -441,27 +1772,113 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
                                                                                                              return trigger;
                                                                                                          })
                                                                                                          .collect(toList()))
-                                                                                .orElse(new ArrayList<>()))
-                          .withEnvironmentVariables(environmentVariables(lambdaFunction));                          
+                                                                                .orElse(new ArrayList<>()));
 
+            if (lambdaFunction.isSnapStart() && !isSnapStartRuntime(runtime)) {
+                throw new IllegalArgumentException("Configuration error. LambdaFunction -> 'snapStart' of " + functionName
+                                                   + " requires a java11 runtime or later, not " + runtime);
+            }
+            validatePerformanceProfile(lambdaFunction);
+            if (lambdaFunction.isSnapStart() && !lambdaFunction.getProvisionedConcurrency().isEmpty()) {
+                throw new IllegalArgumentException("Configuration error. LambdaFunction -> 'snapStart' and 'provisionedConcurrency' of "
+                                                   + functionName + " can't be combined");
+            }
+            validateWarmUp(lambdaFunction);
             return lambdaFunction;
         }).collect(toList());
     }
 
+    private void validateWarmUp(LambdaFunction lambdaFunction) {
+        int concurrency = lambdaFunction.getWarmUpConcurrency();
+        if (concurrency < 0 || concurrency > MAX_WARM_UP_CONCURRENCY) {
+            throw new IllegalArgumentException("Configuration error. LambdaFunction -> 'warmUpConcurrency' of "
+                                               + lambdaFunction.getFunctionName() + " must be between 0 and "
+                                               + MAX_WARM_UP_CONCURRENCY);
+        }
+        if (concurrency > 0 && !lambdaFunction.isPublish()) {
+            throw new IllegalArgumentException("Configuration error. LambdaFunction -> 'warmUpConcurrency' of "
+                                               + lambdaFunction.getFunctionName() + " requires publish");
+        }
+        // Invocations beyond the reserved concurrency would be throttled and count as errors.
+        if (lambdaFunction.getReservedConcurrency() != null && concurrency > lambdaFunction.getReservedConcurrency()) {
+            throw new IllegalArgumentException("Configuration error. LambdaFunction -> 'warmUpConcurrency' of "
+                                               + lambdaFunction.getFunctionName() + " exceeds its reservedConcurrency "
+                                               + lambdaFunction.getReservedConcurrency());
+        }
+    }
+
+    /**
+     * Chooses the functions this execution works on. Called once the configuration has been resolved locally,
+     * before anything is read from AWS.
+     *
+     * @param lambdaFunctions all configured functions
+     * @return the functions to process
+     * @throws Exception if the selection fails
+     */
+    List<LambdaFunction> selectLambdaFunctions(List<LambdaFunction> lambdaFunctions) throws Exception {
+        return lambdaFunctions;
+    }
+
+    /**
+     * Hashes everything that determines what a deployment of the function looks like, apart from the deliverable
+     * and the environment variables defined in AWS: the function's locally resolved configuration and the
+     * mojo parameters which apply to it.
+     *
+     * @param lambdaFunction a function whose configuration has been resolved locally
+     * @return hex encoded SHA-256 hash
+     * @throws IOException if the configuration can't be serialized
+     */
+    String configurationHash(LambdaFunction lambdaFunction) throws IOException {
+        Map<String, Object> inputs = new TreeMap<>();
+        inputs.put("function", lambdaFunction);
+        inputs.put("region", regionName);
+        inputs.put("runtime", runtime);
+        inputs.put("s3Bucket", s3Bucket);
+        inputs.put("s3Key", fileName);
+        inputs.put("dependencies", dependenciesSha256);
+        inputs.put("environmentVariables", environmentVariables);
+        inputs.put("passThrough", passThrough);
+        inputs.put("encryptedPassThrough", ofNullable(encryptedPassThrough).map(DigestUtils::sha256Hex).orElse(null));
+        inputs.put("kmsEncryptionKeyArn", kmsEncryptionKeyArn);
+        return DigestUtils.sha256Hex(JsonUtil.mapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS).writeValueAsBytes(inputs));
+    }
+
+    /**
+     * @param lambdaFunction a function
+     * @return the key under which the function is recorded in the deployment manifest
+     */
+    String manifestKey(LambdaFunction lambdaFunction) {
+        return regionName + ":" + lambdaFunction.getFunctionName();
+    }
+
+    /**
+     * Reads the state of the selected functions from AWS.
+     *
+     * @throws MojoExecutionException if the state could not be read
+     */
+    void initRemoteState() throws MojoExecutionException {
+        remoteState = new RemoteState(lambdaClient(), getLog());
+        try {
+            remoteState.load(lambdaFunctions, listFunctionsThreshold, deployConcurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while reading the state of lambda functions", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Could not read the state of lambda functions: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private Map<String, String> environmentVariables(LambdaFunction lambdaFunction) {
         // Get existing environment variables to interleave them with the new ones or replacements.
         Map<String, String> awsDefinedEnvVars = new HashMap<String, String>();
         
-        try {
-            awsDefinedEnvVars = ofNullable(lambdaClient.getFunctionConfiguration(new GetFunctionConfigurationRequest()
-                .withFunctionName(lambdaFunction.getFunctionName())
-                .withQualifier(lambdaFunction.getQualifier())).getEnvironment()).flatMap(x -> {
-                    return of(x.getVariables());}).orElse(new HashMap<>());
-        } catch(ResourceNotFoundException rnfe) {
+        FunctionState state = remoteState.get(lambdaFunction);
+        if (state.exists()) {
+            awsDefinedEnvVars = ofNullable(state.getConfiguration().getEnvironment()).flatMap(x -> {
+                    return ofNullable(x.getVariables());}).map(HashMap::new).orElse(new HashMap<>());
+        } else {
             getLog().debug("Lambda function doesn't exist yet, no existing environment variables retrieved.");
-        } catch(Exception e) {
-            getLog().error("Could not retrieve existing environment variables " + e.getMessage());
         }
         
         Map<String, String> configurationEnvVars = ofNullable(environmentVariables).orElse(new HashMap<>());
@@ -505,7 +1922,45 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
                     .withProxyUsername(clientConfigObject.get("proxyUsername"))
                     .withProxyPassword(clientConfigObject.get("proxyPassword"))
                     .withProxyWorkstation(clientConfigObject.get("proxyWorkstation")));
-        }).orElse(new ClientConfiguration());
+        }).orElse(new ClientConfiguration())
+          .withRetryPolicy(new RetryPolicy(
+              (request, exception, retriesAttempted) ->
+                  PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry(request, exception, retriesAttempted) ||
+                  isUpdateInProgress(exception),
+              PredefinedRetryPolicies.DEFAULT_BACKOFF_STRATEGY,
+              PredefinedRetryPolicies.DEFAULT_MAX_ERROR_RETRY,
+              true))
+          .withMaxConnections(maxConnections());
+    }
+
+    /*
+     * Every simultaneous warm-up invocation holds a connection until the function returns.
+     */
+    private int maxConnections() {
+        return Math.max(ClientConfiguration.DEFAULT_MAX_CONNECTIONS, maxWarmUpConcurrency());
+    }
+
+    /**
+     * @return the largest warm-up concurrency of the functions, which warm-ups across all functions share
+     */
+    int maxWarmUpConcurrency() {
+        return ofNullable(lambdaFunctions).orElse(new ArrayList<>()).stream()
+                                          .map(LambdaFunction::getWarmUpConcurrency)
+                                          .filter(Objects::nonNull)
+                                          .mapToInt(Integer::intValue)
+                                          .max().orElse(warmUpConcurrency);
+    }
+
+    /**
+     * <p>
+     * Lambda rejects changes to a function while an earlier change is still being applied. Unlike other conflicts,
+     * these go away by themselves and are worth retrying.
+     * </p>
+     */
+    private static boolean isUpdateInProgress(AmazonClientException exception) {
+        return exception instanceof AmazonServiceException
+                && "ResourceConflictException".equals(((AmazonServiceException) exception).getErrorCode())
+                && ofNullable(exception.getMessage()).map(message -> message.contains("in progress")).orElse(false);
     }
 
     private String addSuffix(String functionName) {
@@ -513,6 +1968,56 @@ public abstract class AbstractLambdaMojo extends AbstractMojo {
                                              .orElse(functionName);
     }
 
+    /*
+     * The function's own provisioned concurrency, or else provisionedConcurrency for alias.
+     */
+    private Map<String, Integer> provisionedConcurrency(LambdaFunction lambdaFunction) {
+        Map<String, Integer> provisioned = new TreeMap<>();
+        if (lambdaFunction.getProvisionedConcurrency() != null) {
+            provisioned.putAll(lambdaFunction.getProvisionedConcurrency());
+        } else if (provisionedConcurrency != null) {
+            provisioned.put(ofNullable(alias).orElseThrow(() -> new IllegalArgumentException(
+                    "Configuration error. 'provisionedConcurrency' requires 'alias'")), provisionedConcurrency);
+        }
+        provisioned.keySet().stream()
+                   .filter(name -> !lambdaFunction.getAliases().contains(name))
+                   .findFirst()
+                   .ifPresent(name -> {
+                       throw new IllegalArgumentException("Configuration error. LambdaFunction -> 'provisionedConcurrency' of "
+                               + lambdaFunction.getFunctionName() + " refers to " + name + ", which is not one of its aliases "
+                               + lambdaFunction.getAliases());
+                   });
+        return provisioned;
+    }
+
+    private void validatePerformanceProfile(LambdaFunction lambdaFunction) {
+        String prefix = "Configuration error. LambdaFunction -> ";
+        String functionName = lambdaFunction.getFunctionName();
+        if (!asList("x86_64", "arm64").contains(lambdaFunction.getArchitecture())) {
+            throw new IllegalArgumentException(prefix + "'architecture' of " + functionName + " must be x86_64 or arm64, not "
+                                               + lambdaFunction.getArchitecture());
+        }
+        if (lambdaFunction.getEphemeralStorage() < 512 || lambdaFunction.getEphemeralStorage() > 10240) {
+            throw new IllegalArgumentException(prefix + "'ephemeralStorage' of " + functionName + " must be between 512 and 10240 MB, not "
+                                               + lambdaFunction.getEphemeralStorage());
+        }
+        if (!asList("Active", "PassThrough").contains(lambdaFunction.getTracingMode())) {
+            throw new IllegalArgumentException(prefix + "'tracingMode' of " + functionName + " must be Active or PassThrough, not "
+                                               + lambdaFunction.getTracingMode());
+        }
+        if (lambdaFunction.isLambdaInsights() && lambdaInsightsLayerVersion == null) {
+            throw new IllegalArgumentException(prefix + "'lambdaInsights' of " + functionName + " requires 'lambdaInsightsLayerVersion'");
+        }
+        if (lambdaFunction.isSnapStart() && lambdaFunction.getEphemeralStorage() > 512) {
+            throw new IllegalArgumentException(prefix + "'snapStart' of " + functionName + " can't be combined with more than 512 MB of 'ephemeralStorage'");
+        }
+    }
+
+    static boolean isSnapStartRuntime(String runtime) {
+        Matcher java = Pattern.compile("java(\\d+).*").matcher(String.valueOf(runtime));
+        return java.matches() && Integer.parseInt(java.group(1)) >= 11;
+    }
+
     private List<String> aliases(boolean publish) {
         if (publish) {
             return new ArrayList<String>() {{ add(version); ofNullable(alias).ifPresent(a -> add(a)); }};
@@ -0,0 +1,73 @@
+package com.github.seanroy.plugins;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * I am an apply mojo responsible to make the changes in a change set written by the plan mojo. The remote state
+ * recorded in the change set is used as is, so only the changes themselves call AWS.
+ *
+ * @author sean
+ */
+@Mojo(name = "apply", threadSafe = true)
+public class ApplyLambdaMojo extends DeployLambdaMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if(checkSkip()) return;
+        if (isMultiRegion()) {
+            throw new MojoExecutionException("The apply goal works on a single region. Set region instead of regions.");
+        }
+        initialize();
+        if (lambdaFunctions.isEmpty()) {
+            getLog().info("The change set has no changes to apply.");
+            return;
+        }
+        deploy();
+    }
+
+    /*
+     * Selects the planned functions which have changes, after making sure neither the deliverable nor their configuration changed
+     * since they were planned, and that no function was added since.
+     */
+    @Override
+    List<LambdaFunction> selectLambdaFunctions(List<LambdaFunction> lambdaFunctions) throws Exception {
+        if (!changeSet.exists()) {
+            throw new IllegalStateException("There is no change set " + changeSet + ", run the plan goal first.");
+        }
+        ChangeSet plan = ChangeSet.load(changeSet);
+        if (!artifactDigest().getSha256().equals(plan.getArtifactSha256())) {
+            throw new IllegalStateException("The deliverable changed since " + changeSet + " was planned, run the plan goal again.");
+        }
+        hashConfigurations(lambdaFunctions);
+        for (LambdaFunction lambdaFunction : lambdaFunctions) {
+            ChangeSet.FunctionChange change = plan.getFunctions().get(manifestKey(lambdaFunction));
+            if (change == null) {
+                throw new IllegalStateException(lambdaFunction.getFunctionName() + " was added since " + changeSet
+                        + " was planned, run the plan goal again.");
+            }
+            if (!change.getConfigurationHash().equals(configurationHashOf(lambdaFunction))) {
+                throw new IllegalStateException("The configuration of " + lambdaFunction.getFunctionName() + " changed since "
+                        + changeSet + " was planned, run the plan goal again.");
+            }
+        }
+        plannedChanges = plan.getFunctions();
+        return lambdaFunctions.stream()
+                .filter(lambdaFunction -> plannedChanges.get(manifestKey(lambdaFunction)).hasChanges())
+                .collect(toList());
+    }
+
+    /*
+     * Uses the state the changes were planned against instead of reading it again.
+     */
+    @Override
+    void initRemoteState() {
+        remoteState = new RemoteState(lambdaClient(), getLog());
+        lambdaFunctions.forEach(lambdaFunction ->
+                remoteState.put(lambdaFunction, plannedChanges.get(manifestKey(lambdaFunction)).toState()));
+    }
+}
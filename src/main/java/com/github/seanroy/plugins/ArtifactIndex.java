@@ -0,0 +1,100 @@
+package com.github.seanroy.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.github.seanroy.utils.JsonUtil;
+
+/**
+ * I am a local record of the deliverables stored in S3 under content addressed keys. Since such a key is derived from
+ * the deliverable's hash, an object that was uploaded once never changes, and builds of any module, branch or run can
+ * reuse it. A recorded version of a versioned object is reused without asking S3 whether it is there.
+ *
+ * @author sean
+ */
+public class ArtifactIndex {
+
+    /**
+     * I am what is known about one uploaded deliverable.
+     */
+    public static class Entry {
+        private String versionId;
+
+        public Entry() {
+        }
+
+        public Entry(String versionId) {
+            this.versionId = versionId;
+        }
+
+        /**
+         * @return the version of the object, or null if the bucket isn't versioned
+         */
+        public String getVersionId() {
+            return versionId;
+        }
+    }
+
+    private Map<String, Entry> objects = new TreeMap<>();
+
+    /**
+     * Reads the index, or returns an empty one if the file doesn't exist or can't be read.
+     *
+     * @param file the index file
+     * @return the index
+     */
+    public static ArtifactIndex load(File file) {
+        if (file != null && file.isFile()) {
+            try {
+                ArtifactIndex index = JsonUtil.mapper.readValue(file, ArtifactIndex.class);
+                index.objects = new TreeMap<>(index.objects);
+                return index;
+            } catch (IOException ignored) {
+                // An unreadable index just means S3 is asked again.
+            }
+        }
+        return new ArtifactIndex();
+    }
+
+    /**
+     * Adds an object to the index file. Builds running concurrently in this JVM are serialized, and the file is
+     * replaced atomically so that builds in other JVMs never read a partly written index.
+     *
+     * @param file the index file
+     * @param bucket bucket of the object
+     * @param key key of the object
+     * @param versionId version of the object, or null if the bucket isn't versioned
+     * @throws IOException if the index can't be written
+     */
+    public static synchronized void addObject(File file, String bucket, String key, String versionId) throws IOException {
+        ArtifactIndex index = load(file);
+        index.objects.put(name(bucket, key), new Entry(versionId));
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            JsonUtil.mapper.writerWithDefaultPrettyPrinter().writeValue(temporary, index);
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    /**
+     * @param bucket bucket of the object
+     * @param key key of the object
+     * @return what is known about the object, or null if it isn't known to have been uploaded
+     */
+    public Entry get(String bucket, String key) {
+        return objects.get(name(bucket, key));
+    }
+
+    private static String name(String bucket, String key) {
+        return "s3://" + bucket + "/" + key;
+    }
+}
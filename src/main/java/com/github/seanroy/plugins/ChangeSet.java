@@ -0,0 +1,265 @@
+package com.github.seanroy.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.auth.policy.Policy;
+import com.amazonaws.services.lambda.model.AliasConfiguration;
+import com.amazonaws.services.lambda.model.EventSourceMappingConfiguration;
+import com.amazonaws.services.lambda.model.FunctionConfiguration;
+import com.github.seanroy.utils.JsonUtil;
+
+/**
+ * I am the outcome of the plan goal: for every function, what the apply goal will create, update or delete, and the
+ * remote state the decisions were based on, so that apply doesn't have to read it again.
+ *
+ * @author sean
+ */
+public class ChangeSet {
+
+    public enum Action { CREATE, UPDATE, UNCHANGED }
+
+    /**
+     * I am the kind of a remote resource the apply goal deletes.
+     */
+    public enum DeletionKind { RULE, EVENT_SOURCE_MAPPING, SUBSCRIPTION, PERMISSION }
+
+    /**
+     * I am a planned deletion of an orphaned trigger, rule or permission.
+     */
+    public static class Deletion {
+        private DeletionKind kind;
+        private String id;
+        private String description;
+
+        public Deletion() {
+        }
+
+        public Deletion(DeletionKind kind, String id, String description) {
+            this.kind = kind;
+            this.id = id;
+            this.description = description;
+        }
+
+        public DeletionKind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the rule name, event source mapping UUID, subscription ARN or policy statement id
+         */
+        public String getId() {
+            return id;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * I am a planned change to one trigger of a function.
+     */
+    public static class TriggerChange {
+        private String integration;
+        private String source;
+        private String sourceArn;
+        private Action action;
+
+        public TriggerChange() {
+        }
+
+        public TriggerChange(String integration, String source, String sourceArn, Action action) {
+            this.integration = integration;
+            this.source = source;
+            this.sourceArn = sourceArn;
+            this.action = action;
+        }
+
+        public String getIntegration() {
+            return integration;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * @return the ARN of the trigger's topic, stream or queue, or null if there is none or it doesn't exist yet
+         */
+        public String getSourceArn() {
+            return sourceArn;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+    }
+
+    /**
+     * I am the planned changes to one function and the state of the function they were planned against.
+     */
+    public static class FunctionChange {
+        private String functionName;
+        private Action action;
+        private String configurationHash;
+        private boolean keepAliveChanged;
+        private boolean scheduleRuleChanged;
+        private List<TriggerChange> triggers = new ArrayList<>();
+        private List<Deletion> deletions = new ArrayList<>();
+
+        private FunctionConfiguration configuration;
+        private String policy;
+        private List<AliasConfiguration> aliases;
+        private List<EventSourceMappingConfiguration> eventSourceMappings;
+        private List<String> ruleNames;
+        private boolean reservedConcurrencyRead;
+        private Integer reservedConcurrency;
+        private Map<String, Integer> provisionedConcurrency;
+
+        public FunctionChange() {
+        }
+
+        public FunctionChange(String functionName, Action action, String configurationHash, FunctionState state) {
+            this.functionName = functionName;
+            this.action = action;
+            this.configurationHash = configurationHash;
+            this.configuration = state.getConfiguration();
+            if (state.exists()) {
+                this.policy = state.getPolicy() == null ? null : state.getPolicy().toJson();
+                this.aliases = state.getAliases();
+                this.eventSourceMappings = state.getEventSourceMappings().all();
+                // Concurrency is only read for functions which configure it, so only what planning read is kept.
+                if (state.isReservedConcurrencyRead()) {
+                    this.reservedConcurrencyRead = true;
+                    this.reservedConcurrency = state.getReservedConcurrency();
+                }
+                if (state.isProvisionedConcurrencyRead()) {
+                    this.provisionedConcurrency = state.getProvisionedConcurrency();
+                }
+            }
+        }
+
+        /**
+         * @return the state the change was planned against, without calling AWS
+         */
+        public FunctionState toState() {
+            if (configuration == null) {
+                return FunctionState.absent();
+            }
+            return new FunctionState(configuration,
+                () -> policy == null ? null : Policy.fromJson(policy),
+                () -> aliases,
+                () -> eventSourceMappings,
+                () -> reservedConcurrencyRead ? reservedConcurrency : null,
+                () -> provisionedConcurrency == null ? new HashMap<>() : provisionedConcurrency);
+        }
+
+        public String getFunctionName() {
+            return functionName;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        public String getConfigurationHash() {
+            return configurationHash;
+        }
+
+        public boolean isKeepAliveChanged() {
+            return keepAliveChanged;
+        }
+
+        public void setKeepAliveChanged(boolean keepAliveChanged) {
+            this.keepAliveChanged = keepAliveChanged;
+        }
+
+        public boolean isScheduleRuleChanged() {
+            return scheduleRuleChanged;
+        }
+
+        public void setScheduleRuleChanged(boolean scheduleRuleChanged) {
+            this.scheduleRuleChanged = scheduleRuleChanged;
+        }
+
+        public List<TriggerChange> getTriggers() {
+            return triggers;
+        }
+
+        /**
+         * @return the orphaned triggers, rules and permissions apply will remove
+         */
+        public List<Deletion> getDeletions() {
+            return deletions;
+        }
+
+        /**
+         * Adds a deletion unless the same resource is already deleted.
+         */
+        public void addDeletion(DeletionKind kind, String id, String description) {
+            if (deletions.stream().noneMatch(deletion -> deletion.getKind() == kind && deletion.getId().equals(id))) {
+                deletions.add(new Deletion(kind, id, description));
+            }
+        }
+
+        /**
+         * @return whether apply has anything to do for the function
+         */
+        public boolean hasChanges() {
+            return action != Action.UNCHANGED
+                    || keepAliveChanged
+                    || scheduleRuleChanged
+                    || !deletions.isEmpty()
+                    || triggers.stream().anyMatch(trigger -> trigger.getAction() != Action.UNCHANGED);
+        }
+
+        /**
+         * @return names of the CloudWatch Events rules targeting the function when it was planned
+         */
+        public List<String> getRuleNames() {
+            return ruleNames;
+        }
+
+        public void setRuleNames(List<String> ruleNames) {
+            this.ruleNames = ruleNames;
+        }
+    }
+
+    private String artifactSha256;
+    private Map<String, FunctionChange> functions = new LinkedHashMap<>();
+
+    public ChangeSet() {
+    }
+
+    public ChangeSet(String artifactSha256) {
+        this.artifactSha256 = artifactSha256;
+    }
+
+    public static ChangeSet load(File file) throws IOException {
+        return JsonUtil.mapper.readValue(file, ChangeSet.class);
+    }
+
+    public void save(File file) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        JsonUtil.mapper.writerWithDefaultPrettyPrinter().writeValue(file, this);
+    }
+
+    public String getArtifactSha256() {
+        return artifactSha256;
+    }
+
+    /**
+     * @return the planned changes keyed by region and name of the function
+     */
+    public Map<String, FunctionChange> getFunctions() {
+        return functions;
+    }
+}
@@ -11,7 +11,6 @@ import com.amazonaws.services.cloudwatchevents.model.DeleteRuleRequest;
 import com.amazonaws.services.cloudwatchevents.model.ListRuleNamesByTargetRequest;
 import com.amazonaws.services.cloudwatchevents.model.RemoveTargetsRequest;
 import com.amazonaws.services.lambda.model.DeleteFunctionRequest;
-import com.amazonaws.services.lambda.model.GetFunctionRequest;
 
 
 
@@ -21,7 +20,7 @@ import com.amazonaws.services.lambda.model.GetFunctionRequest;
  *
  * @author Sean N. Roy
  */
-@Mojo(name = "delete-lambda")
+@Mojo(name = "delete-lambda", threadSafe = true)
 public class DeleteLambdaMojo extends AbstractLambdaMojo {
 
     /**
@@ -29,16 +28,25 @@ public class DeleteLambdaMojo extends AbstractLambdaMojo {
      */
     public void execute() throws MojoExecutionException {
         if(checkSkip()) return;
+        if (isMultiRegion()) {
+            forEachRegion();
+            return;
+        }
         super.execute();
         try {
-            lambdaFunctions.forEach(context -> {
+            forEachLambdaFunction("Delete", context -> {
                 try {
-                    deleteTriggers.andThen(deleteFunction).apply(
-                            context.withFunctionArn(lambdaClient.getFunction(new GetFunctionRequest()
-                                .withFunctionName(context.getFunctionName())).getConfiguration().getFunctionArn()));                      
+                    FunctionState state = remoteState.get(context);
+                    if (state.exists()) {
+                        deleteTriggers.andThen(deleteFunction).apply(
+                                context.withFunctionArn(state.getConfiguration().getFunctionArn()));
+                    } else {
+                        getLog().info("Lambda function " + context.getFunctionName() + " doesn't exist.");
+                    }
                 } catch (Exception e) {
                     getLog().error(e.getMessage());
                 }
+                return context;
             });
         } catch (Exception e) {
             getLog().error(e.getMessage(), e);
@@ -57,16 +65,16 @@ public class DeleteLambdaMojo extends AbstractLambdaMojo {
      */
     private Function<LambdaFunction, LambdaFunction> deleteCloudWatchEventRules = lambdaFunction -> {
         // Get the list of cloudwatch event rules defined for this function (if any).
-        List<String> existingRuleNames = cloudWatchEventsClient.listRuleNamesByTarget(new ListRuleNamesByTargetRequest()
+        List<String> existingRuleNames = eventsClient().listRuleNamesByTarget(new ListRuleNamesByTargetRequest()
             .withTargetArn(lambdaFunction.getFunctionArn())).getRuleNames();
         
         existingRuleNames.stream().forEach(ern -> {
             getLog().info("    Deleting CloudWatch Event Rule: " + ern);
-            cloudWatchEventsClient.removeTargets(new RemoveTargetsRequest()
+            eventsClient().removeTargets(new RemoveTargetsRequest()
                 .withIds("1")
                 .withRule(ern));
             try {
-                cloudWatchEventsClient.deleteRule(new DeleteRuleRequest().withName(ern));
+                eventsClient().deleteRule(new DeleteRuleRequest().withName(ern));
             } catch (Exception e) {
                 getLog().info("    Could not delete orphaned rule: " + e.getMessage());
             }
@@ -93,11 +101,16 @@ public class DeleteLambdaMojo extends AbstractLambdaMojo {
         // Delete Lambda Function
         DeleteFunctionRequest dfr = new DeleteFunctionRequest().withFunctionName(functionName);
 
-        lambdaClient.deleteFunction(dfr);
+        lambdaClient().deleteFunction(dfr);
         getLog().info("Lambda function " + functionName + " successfully deleted.");
 
-        s3Client.deleteObject(s3Bucket, fileName);
-        getLog().info("Lambda function code successfully removed from S3.");
+        if (contentAddressedKeys) {
+            // Content addressed objects are shared by every function, module and branch with the same deliverable.
+            getLog().info("Lambda function code " + fileName + " is content addressed and may be shared. Not removing it from S3.");
+        } else {
+            s3Client().deleteObject(s3Bucket, fileName);
+            getLog().info("Lambda function code successfully removed from S3.");
+        }
         
         return context;
     };
@@ -1,21 +1,29 @@
 package com.github.seanroy.plugins;
 
 import static com.amazonaws.services.lambda.model.EventSourcePosition.LATEST;
+import static java.util.Arrays.asList;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -32,11 +40,9 @@ import com.amazonaws.services.cloudwatchevents.model.PutRuleResult;
 import com.amazonaws.services.cloudwatchevents.model.PutTargetsRequest;
 import com.amazonaws.services.cloudwatchevents.model.RemoveTargetsRequest;
 import com.amazonaws.services.cloudwatchevents.model.Target;
-import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
 import com.amazonaws.services.dynamodbv2.model.ListStreamsRequest;
 import com.amazonaws.services.dynamodbv2.model.ListStreamsResult;
 import com.amazonaws.services.dynamodbv2.model.Stream;
-import com.amazonaws.services.dynamodbv2.model.StreamDescription;
 import com.amazonaws.services.lambda.model.AddPermissionRequest;
 import com.amazonaws.services.lambda.model.AddPermissionResult;
 import com.amazonaws.services.lambda.model.AliasConfiguration;
@@ -47,19 +53,23 @@ import com.amazonaws.services.lambda.model.CreateFunctionRequest;
 import com.amazonaws.services.lambda.model.CreateFunctionResult;
 import com.amazonaws.services.lambda.model.DeleteEventSourceMappingRequest;
 import com.amazonaws.services.lambda.model.Environment;
+import com.amazonaws.services.lambda.model.EphemeralStorage;
 import com.amazonaws.services.lambda.model.EventSourceMappingConfiguration;
 import com.amazonaws.services.lambda.model.EventSourcePosition;
-import com.amazonaws.services.lambda.model.FunctionCode;
-import com.amazonaws.services.lambda.model.GetFunctionRequest;
-import com.amazonaws.services.lambda.model.GetFunctionResult;
-import com.amazonaws.services.lambda.model.GetPolicyRequest;
-import com.amazonaws.services.lambda.model.GetPolicyResult;
-import com.amazonaws.services.lambda.model.ListAliasesRequest;
-import com.amazonaws.services.lambda.model.ListAliasesResult;
-import com.amazonaws.services.lambda.model.ListEventSourceMappingsRequest;
-import com.amazonaws.services.lambda.model.ListEventSourceMappingsResult;
+import com.amazonaws.services.lambda.model.FunctionConfiguration;
+import com.amazonaws.services.lambda.model.GetFunctionConfigurationRequest;
+import com.amazonaws.services.lambda.model.GetProvisionedConcurrencyConfigRequest;
+import com.amazonaws.services.lambda.model.ProvisionedConcurrencyStatusEnum;
+import com.amazonaws.services.lambda.model.PublishVersionRequest;
+import com.amazonaws.services.lambda.model.PutFunctionConcurrencyRequest;
+import com.amazonaws.services.lambda.model.PutProvisionedConcurrencyConfigRequest;
+import com.amazonaws.services.lambda.model.PublishVersionResult;
 import com.amazonaws.services.lambda.model.RemovePermissionRequest;
 import com.amazonaws.services.lambda.model.ResourceNotFoundException;
+import com.amazonaws.services.lambda.model.SnapStart;
+import com.amazonaws.services.lambda.model.SnapStartApplyOn;
+import com.amazonaws.services.lambda.model.TracingConfig;
+import com.amazonaws.services.lambda.model.TracingConfigResponse;
 import com.amazonaws.services.lambda.model.UpdateAliasRequest;
 import com.amazonaws.services.lambda.model.UpdateEventSourceMappingRequest;
 import com.amazonaws.services.lambda.model.UpdateEventSourceMappingResult;
@@ -68,7 +78,6 @@ import com.amazonaws.services.lambda.model.VpcConfig;
 import com.amazonaws.services.lambda.model.VpcConfigResponse;
 import com.amazonaws.services.sns.model.CreateTopicRequest;
 import com.amazonaws.services.sns.model.CreateTopicResult;
-import com.amazonaws.services.sns.model.ListSubscriptionsResult;
 import com.amazonaws.services.sns.model.SubscribeRequest;
 import com.amazonaws.services.sns.model.SubscribeResult;
 import com.amazonaws.services.sns.model.Subscription;
@@ -79,41 +88,182 @@ import com.amazonaws.services.sqs.model.GetQueueUrlRequest;
 import com.amazonaws.services.sqs.model.GetQueueUrlResult;
 import com.amazonaws.services.sqs.model.QueueAttributeName;
 
+import com.github.seanroy.utils.EventSourceArns;
+import com.github.seanroy.utils.StepGraph;
+import com.github.seanroy.utils.WarmUp;
+
 
 /**
  * I am a deploy mojo responsible to upload and create or update lambda function in AWS.
  *
  * @author Sean N. Roy, <a href="mailto:sean.roy@gmail.com">Sean Roy</a> 11/08/16.
  */
-@Mojo(name = "deploy-lambda")
+@Mojo(name = "deploy-lambda", threadSafe = true)
 public class DeployLambdaMojo extends AbstractLambdaMojo {
 
+    private DeploymentManifest manifest;
+    private SNSSubscriptionIndex snsSubscriptions;
+    private WarmUp warmUps;
+    private final Map<String, String> configurationHashes = new ConcurrentHashMap<>();
+    /*
+     * The changes planned by the plan goal, keyed like the manifest, when they're being applied.
+     */
+    Map<String, ChangeSet.FunctionChange> plannedChanges;
+
     @Override
     public void execute() throws MojoExecutionException {
         if(checkSkip()) return;
+        if (isMultiRegion()) {
+            forEachRegion();
+            return;
+        }
+        initialize();
+        if (lambdaFunctions.isEmpty()) {
+            getLog().info("All lambda functions are unchanged since their last deployment.");
+            return;
+        }
+        deploy();
+    }
+
+    /**
+     * Resolves the configuration of the functions and reads their remote state.
+     *
+     * @throws MojoExecutionException if either fails
+     */
+    void initialize() throws MojoExecutionException {
         super.execute();
+        snsSubscriptions = new SNSSubscriptionIndex(this::snsClient);
+    }
+
+    /**
+     * Uploads the deliverable and creates or updates the selected functions.
+     *
+     * @throws MojoExecutionException if the upload or any function failed
+     */
+    void deploy() throws MojoExecutionException {
         try {
-            uploadJarToS3();
-            lambdaFunctions.stream().map(f -> {
-                getLog().info("---- Create or update " + f.getFunctionName() + " -----");
-                return f;
-            }).forEach(lf ->
-                getFunctionPolicy
-                    .andThen(cleanUpOrphans)
-                    .andThen(createOrUpdate)
-                    .apply(lf));
+            uploadCode();
+            publishDependencyLayer();
         } catch (Exception e) {
             getLog().error("Error during processing", e);
             throw new MojoExecutionException(e.getMessage());
         }
+        if (maxWarmUpConcurrency() > 0) {
+            warmUps = new WarmUp(maxWarmUpConcurrency());
+        }
+        try {
+            if (isAsyncEngine()) {
+                forEachLambdaFunctionAsync("Create or update", createOrUpdateAsync);
+            } else {
+                forEachLambdaFunction("Create or update", getFunctionPolicy
+                        .andThen(cleanUpOrphans)
+                        .andThen(createOrUpdate)
+                        .andThen(compactFunctionPolicy)
+                        .andThen(recordDeployment));
+            }
+        } finally {
+            if (warmUps != null) {
+                warmUps.shutdown();
+            }
+            saveManifest();
+        }
+    }
+
+    /*
+     * Hashes the inputs of every function and, if requested, drops those whose inputs match the last deployment
+     * recorded in the manifest.
+     */
+    @Override
+    List<LambdaFunction> selectLambdaFunctions(List<LambdaFunction> lambdaFunctions) throws Exception {
+        hashConfigurations(lambdaFunctions);
+        String artifactSha256 = artifactDigest().getSha256();
+        if (!skipUnchanged || Boolean.TRUE.equals(forceUpdate)) {
+            return lambdaFunctions;
+        }
+
+        return lambdaFunctions.stream().filter(lambdaFunction -> {
+            DeploymentManifest.Entry entry = manifest.get(manifestKey(lambdaFunction));
+            boolean unchanged = entry != null
+                    && entry.matches(artifactSha256, configurationHashes.get(lambdaFunction.getFunctionName()))
+                    && (!verifyUnchanged || isDeployed(lambdaFunction, entry));
+            if (unchanged) {
+                getLog().info("---- Skipping " + lambdaFunction.getFunctionName() + ", unchanged since version "
+                        + entry.getVersion() + " was deployed -----");
+            }
+            return !unchanged;
+        }).collect(toList());
+    }
+
+    /**
+     * Loads the deployment manifest and hashes the configuration of every function.
+     *
+     * @param lambdaFunctions all configured functions
+     * @throws IOException if the manifest can't be read or a configuration can't be serialized
+     */
+    void hashConfigurations(List<LambdaFunction> lambdaFunctions) throws IOException {
+        manifest = DeploymentManifest.load(deploymentManifest);
+        for (LambdaFunction lambdaFunction : lambdaFunctions) {
+            configurationHashes.put(lambdaFunction.getFunctionName(), configurationHash(lambdaFunction));
+        }
+    }
+
+    /**
+     * @param lambdaFunction a function
+     * @return the hash of the function's configuration
+     */
+    String configurationHashOf(LambdaFunction lambdaFunction) {
+        return configurationHashes.get(lambdaFunction.getFunctionName());
+    }
+
+    private boolean isDeployed(LambdaFunction lambdaFunction, DeploymentManifest.Entry entry) {
+        try {
+            String codeSha256 = lambdaClient().getFunctionConfiguration(new GetFunctionConfigurationRequest()
+                    .withFunctionName(lambdaFunction.getFunctionName())).getCodeSha256();
+            if (entry.getArtifactSha256().equals(codeSha256)) {
+                return true;
+            }
+            getLog().info(lambdaFunction.getFunctionName() + " runs different code than was last deployed.");
+        } catch (ResourceNotFoundException ignored) {
+            getLog().info(lambdaFunction.getFunctionName() + " no longer exists.");
+        }
+        return false;
+    }
+
+    private Function<LambdaFunction, LambdaFunction> recordDeployment = (LambdaFunction lambdaFunction) -> {
+        try {
+            manifest.put(manifestKey(lambdaFunction), new DeploymentManifest.Entry(
+                    artifactDigest().getSha256(),
+                    configurationHashes.get(lambdaFunction.getFunctionName()),
+                    lambdaFunction.getVersion(),
+                    lambdaFunction.getFunctionArn(),
+                    lambdaFunction.getAliases()));
+        } catch (IOException e) {
+            getLog().warn("Could not record deployment of " + lambdaFunction.getFunctionName() + ": " + e.getMessage());
+        }
+        return lambdaFunction;
+    };
+
+    private void saveManifest() {
+        if (deploymentManifest == null) {
+            return;
+        }
+        try {
+            manifest.save(deploymentManifest);
+        } catch (IOException e) {
+            getLog().warn("Could not write deployment manifest " + deploymentManifest + ": " + e.getMessage());
+        }
     }
     
-    private boolean shouldUpdate(LambdaFunction lambdaFunction, GetFunctionResult getFunctionResult) {
+    private boolean shouldUpdate(LambdaFunction lambdaFunction, FunctionConfiguration configuration) {
+        ChangeSet.FunctionChange planned = plannedChange(lambdaFunction);
+        if (planned != null) {
+            return planned.getAction() != ChangeSet.Action.UNCHANGED;
+        }
     	if (ObjectUtils.defaultIfNull(forceUpdate, StringUtils.containsIgnoreCase(version, "SNAPSHOT"))) {
             getLog().info("Forcing update for " + lambdaFunction.getFunctionName());
             return true;
         }
-        if (isConfigurationChanged(lambdaFunction, getFunctionResult)) {
+        if (isConfigurationChanged(lambdaFunction, configuration)) {
         	return true;
         }
         getLog().info("Config hasn't changed for " + lambdaFunction.getFunctionName());
@@ -124,18 +274,11 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
      *  Get the existing policy function (on updates) and assign it to the lambdaFunction.
      */
     private Function<LambdaFunction, LambdaFunction> getFunctionPolicy = (LambdaFunction lambdaFunction) -> {
-        try {
-            lambdaFunction.setExistingPolicy(Policy.fromJson(lambdaClient.getPolicy(new GetPolicyRequest()
-                .withFunctionName(lambdaFunction.getFunctionName())
-                .withQualifier(lambdaFunction.getQualifier())).getPolicy()));
-        } catch (ResourceNotFoundException rnfe3) {
-            getLog().debug("Probably creating a new function, policy doesn't exist yet: " + rnfe3.getMessage());
-        } 
-        
+        lambdaFunction.setExistingPolicy(remoteState.get(lambdaFunction).getPolicy());
         return lambdaFunction;
     };
 
-    private Function<LambdaFunction, LambdaFunction> updateFunctionConfig = (LambdaFunction lambdaFunction) -> {
+    private Function<LambdaFunction, LambdaFunction> sendFunctionConfig = (LambdaFunction lambdaFunction) -> {
         getLog().info("About to update functionConfig for " + lambdaFunction.getFunctionName());
         UpdateFunctionConfigurationRequest updateFunctionRequest = new UpdateFunctionConfigurationRequest()
                 .withFunctionName(lambdaFunction.getFunctionName())
@@ -146,11 +289,120 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
                 .withMemorySize(lambdaFunction.getMemorySize())
                 .withRuntime(runtime)
                 .withVpcConfig(getVpcConfig(lambdaFunction))
+                .withLayers(functionLayers(lambdaFunction))
+                .withSnapStart(snapStart(lambdaFunction))
+                .withEphemeralStorage(new EphemeralStorage().withSize(lambdaFunction.getEphemeralStorage()))
+                .withTracingConfig(new TracingConfig().withMode(lambdaFunction.getTracingMode()))
                 .withEnvironment(new Environment().withVariables(lambdaFunction.getEnvironmentVariables()));
-        lambdaClient.updateFunctionConfiguration(updateFunctionRequest);
+        lambdaClient().updateFunctionConfiguration(updateFunctionRequest);
         return lambdaFunction;
     };
 
+    /*
+     * Publishes a version once both the code and the configuration are updated, so that the version, and its
+     * snapshot if SnapStart is on, reflects both.
+     */
+    private Function<LambdaFunction, LambdaFunction> sendPublishVersion = (LambdaFunction lambdaFunction) -> {
+        getLog().info("About to publish a version of " + lambdaFunction.getFunctionName());
+        PublishVersionResult publishVersionResult = lambdaClient().publishVersion(new PublishVersionRequest()
+                .withFunctionName(lambdaFunction.getFunctionName()));
+        getLog().info("Version " + publishVersionResult.getVersion() + " of " + lambdaFunction.getFunctionName() + " published");
+        return lambdaFunction.withVersion(publishVersionResult.getVersion())
+                             .withFunctionArn(publishVersionResult.getFunctionArn());
+    };
+
+    /*
+     * Concurrency is only reserved if configured. Otherwise whatever was reserved by other means stays.
+     */
+    private Function<LambdaFunction, LambdaFunction> putReservedConcurrency = (LambdaFunction lambdaFunction) -> {
+        ofNullable(lambdaFunction.getReservedConcurrency()).ifPresent(reserved -> {
+            lambdaClient().putFunctionConcurrency(new PutFunctionConcurrencyRequest()
+                    .withFunctionName(lambdaFunction.getFunctionName())
+                    .withReservedConcurrentExecutions(reserved));
+            getLog().info("Reserved " + reserved + " concurrent executions for " + lambdaFunction.getFunctionName());
+        });
+        return lambdaFunction;
+    };
+
+    private Function<LambdaFunction, LambdaFunction> sendProvisionedConcurrency = (LambdaFunction lambdaFunction) -> {
+        lambdaFunction.getProvisionedConcurrency().forEach((alias, executions) -> {
+            getLog().info("About to provision " + executions + " concurrent executions for " + lambdaFunction.getFunctionName() + ":" + alias);
+            lambdaClient().putProvisionedConcurrencyConfig(new PutProvisionedConcurrencyConfigRequest()
+                    .withFunctionName(lambdaFunction.getFunctionName())
+                    .withQualifier(alias)
+                    .withProvisionedConcurrentExecutions(executions));
+        });
+        return lambdaFunction;
+    };
+
+    /*
+     * Provisions concurrency for the aliases once they point to the new version, and completes once every alias has
+     * its execution environments initialized.
+     */
+    private Function<LambdaFunction, CompletableFuture<LambdaFunction>> provisionConcurrency = lambdaFunction ->
+        async(lambdaFunction, sendProvisionedConcurrency).thenCompose(lf -> CompletableFuture.allOf(
+                lf.getProvisionedConcurrency().keySet().stream()
+                  .map(alias -> awaitProvisionedConcurrency(lf, alias))
+                  .toArray(CompletableFuture[]::new))
+            .thenApply(done -> lf));
+
+    private CompletableFuture<LambdaFunction> awaitProvisionedConcurrency(LambdaFunction lambdaFunction, String alias) {
+        String qualifiedName = lambdaFunction.getFunctionName() + ":" + alias;
+        return await(lambdaFunction, "Provisioned concurrency of " + qualifiedName,
+            () -> lambdaClient().getProvisionedConcurrencyConfig(new GetProvisionedConcurrencyConfigRequest()
+                    .withFunctionName(lambdaFunction.getFunctionName())
+                    .withQualifier(alias)),
+            config -> ProvisionedConcurrencyStatusEnum.READY.toString().equals(config.getStatus()),
+            config -> ProvisionedConcurrencyStatusEnum.FAILED.toString().equals(config.getStatus()) ? config.getStatusReason() : null,
+            config -> String.format("Status: %s, %s of %s executions allocated", config.getStatus(),
+                                    config.getAllocatedProvisionedConcurrentExecutions(),
+                                    config.getRequestedProvisionedConcurrentExecutions()))
+            .thenCompose(config -> async(lambdaFunction, lf -> {
+                getLog().info(config.getAllocatedProvisionedConcurrentExecutions() + " concurrent executions ready for " + qualifiedName);
+                return lf;
+            }));
+    }
+
+    /*
+     * Invokes the new version with warmUpConcurrency simultaneous requests before aliases send traffic to it. Fails,
+     * which leaves the aliases where they were, if more invocations fail than warmUpErrorThreshold allows.
+     */
+    private Function<LambdaFunction, CompletableFuture<LambdaFunction>> warmUp = lambdaFunction ->
+        async(lambdaFunction, lf -> {
+            getLog().info("About to warm up " + lf.getFunctionName() + ":" + lf.getVersion() + " with "
+                          + lf.getWarmUpConcurrency() + " concurrent invocations");
+            return lf;
+        }).thenCompose(lf -> warmUps.invoke(lambdaClient(), lf.getFunctionName(), lf.getVersion(),
+                                            lf.getWarmUpConcurrency(), lf.getWarmUpPayload()))
+          .thenCompose(result -> async(lambdaFunction, lf -> {
+              String qualifiedName = lf.getFunctionName() + ":" + lf.getVersion();
+              if (result.getErrors() > warmUpErrorThreshold) {
+                  throw new IllegalStateException(String.format(
+                          "Warm-up of %s failed %d of %d invocations, more than warmUpErrorThreshold %d allows, e.g. %s. "
+                          + "Its aliases were left on their current versions.", qualifiedName, result.getErrors(),
+                          result.getInvocations(), warmUpErrorThreshold, result.getFirstError()));
+              }
+              getLog().info(String.format("%s warmed up: %d of %d invocations initialized an execution environment, %d failed",
+                                          qualifiedName, result.getInitialized(), result.getInvocations(), result.getErrors()));
+              return lf;
+          }));
+
+    /*
+     * SnapStart is only sent when it is on, or to turn it off, so that runtimes without SnapStart aren't bothered.
+     */
+    private SnapStart snapStart(LambdaFunction lambdaFunction) {
+        boolean enabled = Boolean.TRUE.equals(lambdaFunction.isSnapStart());
+        if (!enabled && !isSnapStartEnabled(remoteState.get(lambdaFunction).getConfiguration())) {
+            return null;
+        }
+        return new SnapStart().withApplyOn(enabled ? SnapStartApplyOn.PublishedVersions : SnapStartApplyOn.None);
+    }
+
+    private static boolean isSnapStartEnabled(FunctionConfiguration configuration) {
+        return configuration != null && configuration.getSnapStart() != null
+               && SnapStartApplyOn.PublishedVersions.toString().equals(configuration.getSnapStart().getApplyOn());
+    }
+
 
     private Function<LambdaFunction, LambdaFunction> createOrUpdateAliases = (LambdaFunction lambdaFunction) -> {
         lambdaFunction.getAliases().forEach(alias -> {
@@ -159,7 +411,7 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
                     .withFunctionVersion(lambdaFunction.getVersion())
                     .withName(alias);
             try {
-                lambdaClient.updateAlias(updateAliasRequest
+                lambdaClient().updateAlias(updateAliasRequest
                         );
                 getLog().info("Alias " + alias + " updated for " + lambdaFunction.getFunctionName() + " with version " + lambdaFunction.getVersion());
             } catch (ResourceNotFoundException ignored) {
@@ -167,7 +419,7 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
                         .withFunctionName(lambdaFunction.getFunctionName())
                         .withFunctionVersion(lambdaFunction.getVersion())
                         .withName(alias);
-                lambdaClient.createAlias(createAliasRequest);
+                lambdaClient().createAlias(createAliasRequest);
                 getLog().info("Alias " + alias + " created for " + lambdaFunction.getFunctionName() + " with version " + lambdaFunction.getVersion());
             }
         });
@@ -176,44 +428,39 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
 
     private BiFunction<Trigger, LambdaFunction, Trigger> createOrUpdateSNSTopicSubscription = (Trigger trigger, LambdaFunction lambdaFunction) -> {
         getLog().info("About to create or update " + trigger.getIntegration() + " trigger for " + trigger.getSNSTopic());
-        CreateTopicRequest createTopicRequest = new CreateTopicRequest()
-                .withName(trigger.getSNSTopic());
-        CreateTopicResult createTopicResult = snsClient.createTopic(createTopicRequest);
-        getLog().info("Topic " + createTopicResult.getTopicArn() + " created");
+        ChangeSet.TriggerChange planned = plannedTrigger(lambdaFunction, trigger);
+        String topicArn = ofNullable(planned).map(ChangeSet.TriggerChange::getSourceArn).orElseGet(() -> {
+            CreateTopicRequest createTopicRequest = new CreateTopicRequest()
+                    .withName(trigger.getSNSTopic());
+            CreateTopicResult createTopicResult = snsClient().createTopic(createTopicRequest);
+            getLog().info("Topic " + createTopicResult.getTopicArn() + " created");
+            return createTopicResult.getTopicArn();
+        });
 
-        SubscribeRequest subscribeRequest = new SubscribeRequest()
-                .withTopicArn(createTopicResult.getTopicArn())
-                .withEndpoint(lambdaFunction.getUnqualifiedFunctionArn())
-                .withProtocol("lambda");
-        SubscribeResult subscribeResult = snsClient.subscribe(subscribeRequest);
-        getLog().info("Lambda function " + lambdaFunction.getFunctionName() + " subscribed to " + createTopicResult.getTopicArn());
-        getLog().info("Created " + trigger.getIntegration() + " trigger " + subscribeResult.getSubscriptionArn());
+        // A change set only creates the subscriptions it found missing.
+        if (planned == null || planned.getAction() == ChangeSet.Action.CREATE) {
+            SubscribeRequest subscribeRequest = new SubscribeRequest()
+                    .withTopicArn(topicArn)
+                    .withEndpoint(lambdaFunction.getUnqualifiedFunctionArn())
+                    .withProtocol("lambda");
+            SubscribeResult subscribeResult = snsClient().subscribe(subscribeRequest);
+            getLog().info("Lambda function " + lambdaFunction.getFunctionName() + " subscribed to " + topicArn);
+            getLog().info("Created " + trigger.getIntegration() + " trigger " + subscribeResult.getSubscriptionArn());
+        }
 
 
-        Optional<Statement> statementOpt;
-        try {
-            GetPolicyRequest getPolicyRequest = new GetPolicyRequest()
-                    .withFunctionName(lambdaFunction.getFunctionName());
-            GetPolicyResult GetPolicyResult = lambdaClient.getPolicy(getPolicyRequest);
-            statementOpt = Policy.fromJson(GetPolicyResult.getPolicy()).getStatements().stream()
-                                                     .filter(statement -> statement.getActions().stream().anyMatch(e -> PERM_LAMBDA_INVOKE.equals(e.getActionName())) &&
-                                                             statement.getPrincipals().stream().anyMatch(principal -> PRINCIPAL_SNS.equals(principal.getId())) &&
-                                                             statement.getConditions().stream().anyMatch(condition -> condition.getValues().stream().anyMatch(s -> Objects.equals(createTopicResult.getTopicArn(), s)))
-                                                     ).findAny();
-        } catch (ResourceNotFoundException ignored) {
-            // no policy found
-            statementOpt = empty();
-        }
+        boolean isPermitted = ofNullable(lambdaFunction.getExistingPolicy()).orElse(new Policy()).getStatements().stream()
+                .anyMatch(statement -> statement.getActions().stream().anyMatch(e -> PERM_LAMBDA_INVOKE.equals(e.getActionName())) &&
+                                       statement.getPrincipals().stream().anyMatch(principal -> PRINCIPAL_SNS.equals(principal.getId())) &&
+                                       sourceArns(statement).contains(topicArn));
 
-        if (!statementOpt.isPresent()) {
-            AddPermissionRequest addPermissionRequest = new AddPermissionRequest()
+        if (!isPermitted) {
+            addPermission(lambdaFunction, new AddPermissionRequest()
                     .withAction(PERM_LAMBDA_INVOKE)
                     .withPrincipal(PRINCIPAL_SNS)
-                    .withSourceArn(createTopicResult.getTopicArn())
+                    .withSourceArn(topicArn)
                     .withFunctionName(lambdaFunction.getFunctionName())
-                    .withStatementId(UUID.randomUUID().toString());
-            AddPermissionResult addPermissionResult = lambdaClient.addPermission(addPermissionRequest);
-            getLog().debug("Added permission to lambda function " + addPermissionResult.toString());
+                    .withStatementId(getSNSPermissionStatementId(topicArn)));
         }
         return trigger;
     };
@@ -225,15 +472,13 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
         if (!ofNullable(lambdaFunction.getExistingPolicy()).orElse(new Policy()).getStatements().stream().anyMatch(s ->
                 s.getId().equals(getAlexaPermissionStatementId()))) {
             getLog().info("Granting invoke permission to " + trigger.getIntegration());    
-            AddPermissionRequest addPermissionRequest = new AddPermissionRequest()
+            addPermission(lambdaFunction, new AddPermissionRequest()
                     .withAction(PERM_LAMBDA_INVOKE)
                     .withPrincipal(PRINCIPAL_ALEXA)
                     .withFunctionName(lambdaFunction.getFunctionName())
                     .withQualifier(lambdaFunction.getQualifier())
                     .withStatementId(getAlexaPermissionStatementId())
-                    .withEventSourceToken(trigger.getAlexaSkillId());
-    
-            AddPermissionResult addPermissionResult = lambdaClient.addPermission(addPermissionRequest);
+                    .withEventSourceToken(trigger.getAlexaSkillId()));
         }
 
         return trigger;
@@ -249,20 +494,75 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
         if (!ofNullable(lambdaFunction.getExistingPolicy()).orElse(new Policy()).getStatements().stream().anyMatch(s ->
                  s.getId().equals(getLexPermissionStatementId(trigger.getLexBotName())))) {
             getLog().info("Granting invoke permission to Lex bot " + trigger.getLexBotName());
-            AddPermissionRequest addPermissionRequest = new AddPermissionRequest()
+            addPermission(lambdaFunction, new AddPermissionRequest()
                 .withAction(PERM_LAMBDA_INVOKE)
                 .withPrincipal(PRINCIPAL_LEX)
                 .withFunctionName(lambdaFunction.getFunctionName())
                 .withQualifier(lambdaFunction.getQualifier())
-                .withStatementId(getLexPermissionStatementId(trigger.getLexBotName()));
-    
-            AddPermissionResult addPermissionResult = lambdaClient.addPermission(addPermissionRequest);
+                .withStatementId(getLexPermissionStatementId(trigger.getLexBotName())));
         }
         return trigger;
     };
     private String getLexPermissionStatementId(String botName) {
         return "lambda-maven-plugin-lex-" + regionName + "-permission-" + botName;
     }
+    private String getSNSPermissionStatementId(String topicArn) {
+        return "lambda-maven-plugin-sns-" + DigestUtils.md5Hex(topicArn);
+    }
+    private String getEventsPermissionStatementId(String ruleArn) {
+        return "lambda-maven-plugin-events-" + DigestUtils.md5Hex(ruleArn);
+    }
+
+    /**
+     * <p>
+     * Grants a permission unless the function's policy already has a statement with the same id. The new statement
+     * is added to the policy read at the start of the build, so the policy never has to be read again.
+     * </p>
+     */
+    private void addPermission(LambdaFunction lambdaFunction, AddPermissionRequest addPermissionRequest) {
+        Policy policy = ofNullable(lambdaFunction.getExistingPolicy()).orElse(new Policy());
+        if (policy.getStatements().stream().anyMatch(s -> addPermissionRequest.getStatementId().equals(s.getId()))) {
+            return;
+        }
+        AddPermissionResult addPermissionResult = lambdaClient().addPermission(addPermissionRequest);
+        getLog().debug("Added permission to lambda function " + addPermissionResult.toString());
+
+        // Permissions of other qualifiers live in another policy. Steps of the function running concurrently may
+        // change the policy at the same time.
+        if (Objects.equals(addPermissionRequest.getQualifier(), lambdaFunction.getQualifier())) {
+            synchronized (lambdaFunction) {
+                Policy current = ofNullable(lambdaFunction.getExistingPolicy()).orElse(policy);
+                List<Statement> statements = new ArrayList<>(current.getStatements());
+                statements.addAll(Policy.fromJson("{\"Statement\":[" + addPermissionResult.getStatement() + "]}").getStatements());
+                current.setStatements(statements);
+                lambdaFunction.setExistingPolicy(current);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Revokes a permission and removes its statement from the policy read at the start of the build.
+     * </p>
+     */
+    private void removePermission(LambdaFunction lambdaFunction, String statementId) {
+        lambdaClient().removePermission(new RemovePermissionRequest()
+                .withFunctionName(lambdaFunction.getFunctionName())
+                .withQualifier(lambdaFunction.getQualifier())
+                .withStatementId(statementId));
+        synchronized (lambdaFunction) {
+            ofNullable(lambdaFunction.getExistingPolicy()).ifPresent(policy -> policy.setStatements(policy.getStatements().stream()
+                    .filter(s -> !statementId.equals(s.getId()))
+                    .collect(toList())));
+        }
+    }
+
+    private static List<String> sourceArns(Statement statement) {
+        return statement.getConditions().stream()
+                        .flatMap(condition -> condition.getValues().stream())
+                        .filter(value -> value.startsWith("arn:"))
+                        .collect(toList());
+    }
 
     private BiFunction<Trigger, LambdaFunction, Trigger> createOrUpdateScheduledRule = (Trigger trigger, LambdaFunction lambdaFunction) -> {
         // TODO: I hate that these checks are done twice, but for the time being it beats updates that just didn't work.
@@ -272,22 +572,25 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
                     .withName(trigger.getRuleName())
                     .withDescription(trigger.getRuleDescription())
                     .withScheduleExpression(trigger.getScheduleExpression());
-            PutRuleResult putRuleResult = eventsClient.putRule(putRuleRequest);
+            PutRuleResult putRuleResult = eventsClient().putRule(putRuleRequest);
             getLog().info("Created " + trigger.getIntegration() + " trigger " + putRuleResult.getRuleArn());
 
-            AddPermissionRequest addPermissionRequest = new AddPermissionRequest()
-                    .withAction(PERM_LAMBDA_INVOKE)
-                    .withPrincipal(PRINCIPAL_EVENTS)
-                    .withSourceArn(putRuleResult.getRuleArn())
-                    .withFunctionName(lambdaFunction.getFunctionName())
-                    .withStatementId(UUID.randomUUID().toString());
-            AddPermissionResult addPermissionResult = lambdaClient.addPermission(addPermissionRequest);
-            getLog().debug("Added permission to lambda function " + addPermissionResult.toString());
+            boolean isPermitted = ofNullable(lambdaFunction.getExistingPolicy()).orElse(new Policy()).getStatements().stream()
+                    .anyMatch(statement -> statement.getPrincipals().stream().anyMatch(principal -> PRINCIPAL_EVENTS.equals(principal.getId())) &&
+                                           sourceArns(statement).contains(putRuleResult.getRuleArn()));
+            if (!isPermitted) {
+                addPermission(lambdaFunction, new AddPermissionRequest()
+                        .withAction(PERM_LAMBDA_INVOKE)
+                        .withPrincipal(PRINCIPAL_EVENTS)
+                        .withSourceArn(putRuleResult.getRuleArn())
+                        .withFunctionName(lambdaFunction.getFunctionName())
+                        .withStatementId(getEventsPermissionStatementId(putRuleResult.getRuleArn())));
+            }
 
             PutTargetsRequest putTargetsRequest = new PutTargetsRequest()
                     .withRule(trigger.getRuleName())
                     .withTargets(new Target().withId("1").withArn(lambdaFunction.getUnqualifiedFunctionArn()));
-            eventsClient.putTargets(putTargetsRequest);
+            eventsClient().putTargets(putTargetsRequest);
         }
         return trigger;
     };
@@ -317,29 +620,39 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
 
     private BiFunction<Trigger, LambdaFunction, Trigger> createOrUpdateDynamoDBTrigger = (Trigger trigger, LambdaFunction lambdaFunction) -> {
         getLog().info("About to create or update " + trigger.getIntegration() + " trigger for " + trigger.getDynamoDBTable());
-        ListStreamsRequest listStreamsRequest = new ListStreamsRequest().withTableName(trigger.getDynamoDBTable());
-        ListStreamsResult listStreamsResult = dynamoDBStreamsClient.listStreams(listStreamsRequest);
-
-        String streamArn = listStreamsResult.getStreams().stream()
-                                            .filter(s -> Objects.equals(trigger.getDynamoDBTable(), s.getTableName()))
-                                            .findFirst()
-                                            .map(Stream::getStreamArn)
-                                            .orElseThrow(() -> new IllegalArgumentException("Unable to find stream for table " + trigger.getDynamoDBTable()));
+        String streamArn = ofNullable(plannedSourceArn(lambdaFunction, trigger)).orElseGet(() -> dynamoDBStreamArn(trigger));
 
         return findorUpdateMappingConfiguration(trigger, lambdaFunction, streamArn);
     };
+
+    private String dynamoDBStreamArn(Trigger trigger) {
+        ListStreamsRequest listStreamsRequest = new ListStreamsRequest().withTableName(trigger.getDynamoDBTable());
+        ListStreamsResult listStreamsResult = dynamoDBStreamsClient().listStreams(listStreamsRequest);
+
+        return listStreamsResult.getStreams().stream()
+                                .filter(s -> Objects.equals(trigger.getDynamoDBTable(), s.getTableName()))
+                                .findFirst()
+                                .map(Stream::getStreamArn)
+                                .orElseThrow(() -> new IllegalArgumentException("Unable to find stream for table " + trigger.getDynamoDBTable()));
+    }
     
     
     private BiFunction<Trigger, LambdaFunction, Trigger> createOrUpdateSQSTrigger = (Trigger trigger, LambdaFunction lambdaFunction) -> {
         getLog().info("About to create or update " + trigger.getIntegration() + " trigger for " + trigger.getStandardQueue());
+        String queueArn = ofNullable(plannedSourceArn(lambdaFunction, trigger)).orElseGet(() -> sqsQueueArn(trigger));
+
+        return findorUpdateMappingConfiguration(trigger, lambdaFunction, queueArn);
+    };
+
+    private String sqsQueueArn(Trigger trigger) {
         String queueArn = null;
         
-        Optional<GetQueueUrlResult> getQueueUrlOptionalResult = ofNullable(sqsClient.getQueueUrl(new GetQueueUrlRequest()
+        Optional<GetQueueUrlResult> getQueueUrlOptionalResult = ofNullable(sqsClient().getQueueUrl(new GetQueueUrlRequest()
     			.withQueueName(trigger.getStandardQueue())));
         
         if (getQueueUrlOptionalResult.isPresent()) {
         	String queueUrl = getQueueUrlOptionalResult.get().getQueueUrl();
-			GetQueueAttributesResult getQueueAttributesResult = sqsClient.getQueueAttributes( new GetQueueAttributesRequest()
+			GetQueueAttributesResult getQueueAttributesResult = sqsClient().getQueueAttributes( new GetQueueAttributesRequest()
 	    			.withQueueUrl(queueUrl).withAttributeNames(QueueAttributeName.QueueArn));
 	    	
 	    	queueArn = getQueueAttributesResult.getAttributes().get(QueueAttributeName.QueueArn.name());
@@ -347,43 +660,103 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
         } else {
         	throw new IllegalArgumentException("Unable to find queue " + trigger.getStandardQueue());
         }
-        
-		
-        return findorUpdateMappingConfiguration(trigger, lambdaFunction, queueArn);
-    };
+        return queueArn;
+    }
 
     private BiFunction<Trigger, LambdaFunction, Trigger> createOrUpdateKinesisStream = (Trigger trigger, LambdaFunction lambdaFunction) -> {
         getLog().info("About to create or update " + trigger.getIntegration() + " trigger for " + trigger.getKinesisStream());
 
+        String streamArn = ofNullable(plannedSourceArn(lambdaFunction, trigger)).orElseGet(() -> kinesisStreamArn(trigger));
+
+        return findorUpdateMappingConfiguration(trigger, lambdaFunction, streamArn);
+    };
+
+    private String kinesisStreamArn(Trigger trigger) {
         try {
-            return findorUpdateMappingConfiguration(trigger, lambdaFunction, 
-                    kinesisClient.describeStream(trigger.getKinesisStream()).getStreamDescription().getStreamARN());
+            return kinesisClient().describeStream(trigger.getKinesisStream()).getStreamDescription().getStreamARN();
         } catch (Exception rnfe) {
             getLog().info(rnfe.getMessage());
             throw new IllegalArgumentException("Unable to find stream with name " + trigger.getKinesisStream());
         }        
-    };
+    }
+
+    /*
+     * The ARN of the trigger's topic, stream or queue, resolved while planning so that applying the plan needn't
+     * look it up. Topics which don't exist yet have none.
+     */
+    private String sourceArn(LambdaFunction lambdaFunction, Trigger trigger) {
+        switch (trigger.getIntegration()) {
+            case TRIG_INT_LABEL_DYNAMO_DB:
+                return dynamoDBStreamArn(trigger);
+            case TRIG_INT_LABEL_KINESIS:
+                return kinesisStreamArn(trigger);
+            case TRIG_INT_LABEL_SQS:
+                return sqsQueueArn(trigger);
+            case TRIG_INT_LABEL_SNS:
+                return snsTopicArn(lambdaFunction, trigger);
+            default:
+                return null;
+        }
+    }
+
+    private String snsTopicArn(LambdaFunction lambdaFunction, Trigger trigger) {
+        if (lambdaFunction.getFunctionArn() != null) {
+            Optional<String> subscribed = snsSubscriptionsOf(lambdaFunction).stream()
+                    .map(Subscription::getTopicArn)
+                    .filter(arn -> arn.substring(arn.lastIndexOf(":")+1).equals(trigger.getSNSTopic()))
+                    .findFirst();
+            if (subscribed.isPresent()) {
+                return subscribed.get();
+            }
+        }
+        // Topics live in the partition and account of the function, or of its role if it doesn't exist yet.
+        String[] arn = ofNullable(lambdaFunction.getFunctionArn()).orElse(lambdaFunction.getLambdaRoleArn()).split(":");
+        String topicArn = String.join(":", "arn", arn[1], "sns", regionName, arn[4], trigger.getSNSTopic());
+        try {
+            snsClient().getTopicAttributes(topicArn);
+            return topicArn;
+        } catch (com.amazonaws.services.sns.model.NotFoundException ignored) {
+            return null;
+        }
+    }
+
+    /*
+     * The planned change to the trigger when a change set is applied, or null.
+     */
+    private ChangeSet.TriggerChange plannedTrigger(LambdaFunction lambdaFunction, Trigger trigger) {
+        ChangeSet.FunctionChange planned = plannedChange(lambdaFunction);
+        int index = lambdaFunction.getTriggers().indexOf(trigger);
+        return planned == null || index < 0 ? null : planned.getTriggers().get(index);
+    }
+
+    private String plannedSourceArn(LambdaFunction lambdaFunction, Trigger trigger) {
+        return ofNullable(plannedTrigger(lambdaFunction, trigger)).map(ChangeSet.TriggerChange::getSourceArn).orElse(null);
+    }
 
     private Trigger findorUpdateMappingConfiguration(Trigger trigger, LambdaFunction lambdaFunction, String streamArn) {
-        ListEventSourceMappingsRequest listEventSourceMappingsRequest = new ListEventSourceMappingsRequest()
-                .withFunctionName(lambdaFunction.getUnqualifiedFunctionArn());
-        ListEventSourceMappingsResult listEventSourceMappingsResult = lambdaClient.listEventSourceMappings(listEventSourceMappingsRequest);
-
-        Optional<EventSourceMappingConfiguration> eventSourceMappingConfiguration = listEventSourceMappingsResult.getEventSourceMappings().stream()
-                .filter(stream -> {
-                    boolean isSameFunctionArn = Objects.equals(stream.getFunctionArn(), lambdaFunction.getUnqualifiedFunctionArn());
-                    boolean isSameSourceArn = Objects.equals(stream.getEventSourceArn(), streamArn);
-                    return isSameFunctionArn && isSameSourceArn;
-                })
-                .findFirst();
+        EventSourceMappingIndex eventSourceMappings = remoteState.get(lambdaFunction).getEventSourceMappings();
+        Optional<EventSourceMappingConfiguration> eventSourceMappingConfiguration =
+                eventSourceMappings.find(streamArn, lambdaFunction.getUnqualifiedFunctionArn());
+        int batchSize = ofNullable(trigger.getBatchSize()).orElse(10);
+        boolean enabled = ofNullable(trigger.getEnabled()).orElse(true);
 
-        if (eventSourceMappingConfiguration.isPresent()) {
+        if (eventSourceMappingConfiguration.isPresent() && !isEventSourceMappingChanged(eventSourceMappingConfiguration.get(), batchSize, enabled)) {
+            trigger.withTriggerArn(eventSourceMappingConfiguration.get().getEventSourceArn());
+            getLog().info(trigger.getIntegration() + " trigger " + trigger.getTriggerArn() + " is unchanged");
+        } else if (eventSourceMappingConfiguration.isPresent()) {
             UpdateEventSourceMappingRequest updateEventSourceMappingRequest = new UpdateEventSourceMappingRequest()
                     .withUUID(eventSourceMappingConfiguration.get().getUUID())
                     .withFunctionName(lambdaFunction.getUnqualifiedFunctionArn())
-                    .withBatchSize(ofNullable(trigger.getBatchSize()).orElse(10))
-                    .withEnabled(ofNullable(trigger.getEnabled()).orElse(true));
-            UpdateEventSourceMappingResult updateEventSourceMappingResult = lambdaClient.updateEventSourceMapping(updateEventSourceMappingRequest);
+                    .withBatchSize(batchSize)
+                    .withEnabled(enabled);
+            UpdateEventSourceMappingResult updateEventSourceMappingResult = lambdaClient().updateEventSourceMapping(updateEventSourceMappingRequest);
+            waitForEventSourceMapping("UpdateEventSourceMapping for " + streamArn, updateEventSourceMappingResult.getUUID());
+            eventSourceMappings.put(new EventSourceMappingConfiguration()
+                    .withUUID(updateEventSourceMappingResult.getUUID())
+                    .withEventSourceArn(updateEventSourceMappingResult.getEventSourceArn())
+                    .withFunctionArn(updateEventSourceMappingResult.getFunctionArn())
+                    .withBatchSize(updateEventSourceMappingResult.getBatchSize())
+                    .withState(enabled ? "Enabled" : "Disabled"));
             trigger.withTriggerArn(updateEventSourceMappingResult.getEventSourceArn());
             getLog().info("Updated " + trigger.getIntegration() + " trigger " + trigger.getTriggerArn());
         } else {
@@ -391,14 +764,21 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
         	CreateEventSourceMappingRequest createEventSourceMappingRequest = new CreateEventSourceMappingRequest()
                     .withFunctionName(lambdaFunction.getUnqualifiedFunctionArn())
                     .withEventSourceArn(streamArn)
-                    .withBatchSize(ofNullable(trigger.getBatchSize()).orElse(10))
-                    .withEnabled(ofNullable(trigger.getEnabled()).orElse(true));
+                    .withBatchSize(batchSize)
+                    .withEnabled(enabled);
         	// For SQS starting position is not valid
         	if (!streamArn.contains(":sqs:")) {
         		createEventSourceMappingRequest.setStartingPosition(EventSourcePosition.fromValue(ofNullable(trigger.getStartingPosition()).orElse(LATEST.toString())));
         	}
             
-            CreateEventSourceMappingResult createEventSourceMappingResult = lambdaClient.createEventSourceMapping(createEventSourceMappingRequest);
+            CreateEventSourceMappingResult createEventSourceMappingResult = lambdaClient().createEventSourceMapping(createEventSourceMappingRequest);
+            waitForEventSourceMapping("CreateEventSourceMapping for " + streamArn, createEventSourceMappingResult.getUUID());
+            eventSourceMappings.put(new EventSourceMappingConfiguration()
+                    .withUUID(createEventSourceMappingResult.getUUID())
+                    .withEventSourceArn(createEventSourceMappingResult.getEventSourceArn())
+                    .withFunctionArn(createEventSourceMappingResult.getFunctionArn())
+                    .withBatchSize(createEventSourceMappingResult.getBatchSize())
+                    .withState(enabled ? "Enabled" : "Disabled"));
             trigger.withTriggerArn(createEventSourceMappingResult.getEventSourceArn());
             getLog().info("Created " + trigger.getIntegration() + " trigger " + trigger.getTriggerArn());
         }
@@ -406,38 +786,41 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
         return trigger;
     }
 
-    private Function<LambdaFunction, LambdaFunction> createOrUpdateTriggers = (LambdaFunction lambdaFunction) -> {
-        lambdaFunction.getTriggers().forEach(trigger -> {
-            if (TRIG_INT_LABEL_CLOUDWATCH_EVENTS.equals(trigger.getIntegration())) {
-                createOrUpdateScheduledRule.apply(trigger, lambdaFunction);
-            } else if (TRIG_INT_LABEL_DYNAMO_DB.equals(trigger.getIntegration())) {
-                createOrUpdateDynamoDBTrigger.apply(trigger, lambdaFunction);
-            } else if (TRIG_INT_LABEL_KINESIS.equals(trigger.getIntegration())) {
-                createOrUpdateKinesisStream.apply(trigger, lambdaFunction);
-            } else if (TRIG_INT_LABEL_SNS.equals(trigger.getIntegration())) {
-                createOrUpdateSNSTopicSubscription.apply(trigger, lambdaFunction);
-            } else if (TRIG_INT_LABEL_ALEXA_SK.equals(trigger.getIntegration())) {
-                addAlexaSkillsKitPermission.apply(trigger, lambdaFunction);
-            } else if (TRIG_INT_LABEL_LEX.equals(trigger.getIntegration())) {
-                addLexPermission.apply(trigger, lambdaFunction);
-            } else if (TRIG_INT_LABEL_SQS.equals(trigger.getIntegration())) {
-                createOrUpdateSQSTrigger.apply(trigger, lambdaFunction);
-            } else {
-                throw new IllegalArgumentException("Unknown integration for trigger " + trigger.getIntegration() + ". Correct your configuration");
-            }
-        });
-        return lambdaFunction;
-    };
-
-    private GetFunctionResult getFunction(LambdaFunction lambdaFunction) {
-        return lambdaClient.getFunction(new GetFunctionRequest().withFunctionName(lambdaFunction.getFunctionName()));
+    /**
+     * <p>
+     * A mapping which is being enabled or disabled already counts as enabled or disabled.
+     * </p>
+     */
+    private boolean isEventSourceMappingChanged(EventSourceMappingConfiguration mapping, int batchSize, boolean enabled) {
+        boolean isEnabled = ofNullable(mapping.getState()).map(state -> state.startsWith("Enabl")).orElse(!enabled);
+        return !Objects.equals(mapping.getBatchSize(), batchSize) || isEnabled != enabled;
     }
 
-    private boolean isConfigurationChanged(LambdaFunction lambdaFunction, GetFunctionResult function) {
+    private BiFunction<Trigger, LambdaFunction, Trigger> createOrUpdateTrigger = (Trigger trigger, LambdaFunction lambdaFunction) -> {
+        if (TRIG_INT_LABEL_CLOUDWATCH_EVENTS.equals(trigger.getIntegration())) {
+            return createOrUpdateScheduledRule.apply(trigger, lambdaFunction);
+        } else if (TRIG_INT_LABEL_DYNAMO_DB.equals(trigger.getIntegration())) {
+            return createOrUpdateDynamoDBTrigger.apply(trigger, lambdaFunction);
+        } else if (TRIG_INT_LABEL_KINESIS.equals(trigger.getIntegration())) {
+            return createOrUpdateKinesisStream.apply(trigger, lambdaFunction);
+        } else if (TRIG_INT_LABEL_SNS.equals(trigger.getIntegration())) {
+            return createOrUpdateSNSTopicSubscription.apply(trigger, lambdaFunction);
+        } else if (TRIG_INT_LABEL_ALEXA_SK.equals(trigger.getIntegration())) {
+            return addAlexaSkillsKitPermission.apply(trigger, lambdaFunction);
+        } else if (TRIG_INT_LABEL_LEX.equals(trigger.getIntegration())) {
+            return addLexPermission.apply(trigger, lambdaFunction);
+        } else if (TRIG_INT_LABEL_SQS.equals(trigger.getIntegration())) {
+            return createOrUpdateSQSTrigger.apply(trigger, lambdaFunction);
+        } else {
+            throw new IllegalArgumentException("Unknown integration for trigger " + trigger.getIntegration() + ". Correct your configuration");
+        }
+    };
+
+    private boolean isConfigurationChanged(LambdaFunction lambdaFunction, FunctionConfiguration configuration) {
         BiPredicate<String, String> isChangeStr = (s0, s1) -> !Objects.equals(s0, s1);
         BiPredicate<Integer, Integer> isChangeInt = (i0, i1) -> !Objects.equals(i0, i1);
         BiPredicate<List<String>, List<String>> isChangeList = (l0, l1) -> !(l0.containsAll(l1) && l1.containsAll(l0));
-        return of(function.getConfiguration())
+        return of(configuration)
                 .map(config -> {
                     VpcConfigResponse vpcConfig = config.getVpcConfig();
                     if (vpcConfig == null) {
@@ -450,17 +833,31 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
                     boolean isMemoryChanged = isChangeInt.test(config.getMemorySize(), lambdaFunction.getMemorySize());
                     boolean isSecurityGroupIdsChanged = isChangeList.test(vpcConfig.getSecurityGroupIds(), lambdaFunction.getSecurityGroupIds());
                     boolean isVpcSubnetIdsChanged = isChangeList.test(vpcConfig.getSubnetIds(), lambdaFunction.getSubnetIds());
+                    boolean isSnapStartChanged = Boolean.TRUE.equals(lambdaFunction.isSnapStart()) != isSnapStartEnabled(config);
+                    // Functions created before these settings existed report none, which means Lambda's defaults.
+                    String currentArchitecture = ofNullable(config.getArchitectures()).filter(a -> !a.isEmpty()).map(a -> a.get(0)).orElse("x86_64");
+                    Integer currentEphemeralStorage = ofNullable(config.getEphemeralStorage()).map(EphemeralStorage::getSize).orElse(512);
+                    String currentTracingMode = ofNullable(config.getTracingConfig()).map(TracingConfigResponse::getMode).orElse("PassThrough");
+                    boolean isArchitectureChanged = isChangeStr.test(currentArchitecture, lambdaFunction.getArchitecture());
+                    boolean isEphemeralStorageChanged = isChangeInt.test(currentEphemeralStorage, lambdaFunction.getEphemeralStorage());
+                    boolean isTracingModeChanged = isChangeStr.test(currentTracingMode, lambdaFunction.getTracingMode());
                     return isDescriptionChanged || isHandlerChanged || isRoleChanged || isTimeoutChanged || isMemoryChanged || 
-                           isSecurityGroupIdsChanged || isVpcSubnetIdsChanged || isAliasesChanged(lambdaFunction) || isKeepAliveChanged(lambdaFunction) ||
-                           isScheduleRuleChanged(lambdaFunction);
+                           isSecurityGroupIdsChanged || isVpcSubnetIdsChanged || isSnapStartChanged ||
+                           isArchitectureChanged || isEphemeralStorageChanged || isTracingModeChanged || isInsightsLayerChanged(lambdaFunction) || isAliasesChanged(lambdaFunction) || isKeepAliveChanged(lambdaFunction) ||
+                           isScheduleRuleChanged(lambdaFunction) || !isDependencyLayerAttached(lambdaFunction) ||
+                           isConcurrencyChanged(lambdaFunction);
                 })
                 .orElse(true);
     }
     
     private boolean isKeepAliveChanged(LambdaFunction lambdaFunction) {
+        ChangeSet.FunctionChange planned = plannedChange(lambdaFunction);
+        if (planned != null) {
+            return planned.isKeepAliveChanged();
+        }
         try {
             return ofNullable(lambdaFunction.getKeepAlive()).map( ka -> {
-                DescribeRuleResult res = eventsClient.describeRule(new DescribeRuleRequest().withName(lambdaFunction.getKeepAliveRuleName()));
+                DescribeRuleResult res = eventsClient().describeRule(new DescribeRuleRequest().withName(lambdaFunction.getKeepAliveRuleName()));
                 return !Objects.equals(res.getScheduleExpression(), lambdaFunction.getKeepAliveScheduleExpression());
             }).orElse(false);
             
@@ -470,9 +867,13 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
     }
     
     private boolean isScheduleRuleChanged(LambdaFunction lambdaFunction) {
+        ChangeSet.FunctionChange planned = plannedChange(lambdaFunction);
+        if (planned != null) {
+            return planned.isScheduleRuleChanged();
+        }
         try {
             return lambdaFunction.getTriggers().stream().filter(t -> TRIG_INT_LABEL_CLOUDWATCH_EVENTS.equals(t.getIntegration())).anyMatch(trigger -> {
-                DescribeRuleResult res = eventsClient.describeRule(new DescribeRuleRequest().withName(trigger.getRuleName()));
+                DescribeRuleResult res = eventsClient().describeRule(new DescribeRuleRequest().withName(trigger.getRuleName()));
                 return !(Objects.equals(res.getName(), trigger.getRuleName()) &&
                         Objects.equals(res.getDescription(), trigger.getRuleDescription()) &&
                         Objects.equals(res.getScheduleExpression(), trigger.getScheduleExpression()));
@@ -482,20 +883,29 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
         }
     }
 
+    private boolean isConcurrencyChanged(LambdaFunction lambdaFunction) {
+        FunctionState state = remoteState.get(lambdaFunction);
+        Integer reserved = lambdaFunction.getReservedConcurrency();
+        if (reserved != null && !reserved.equals(state.getReservedConcurrency())) {
+            return true;
+        }
+        return !lambdaFunction.getProvisionedConcurrency().isEmpty()
+               && lambdaFunction.getProvisionedConcurrency().entrySet().stream().anyMatch(provisioned ->
+                       !provisioned.getValue().equals(state.getProvisionedConcurrency().get(provisioned.getKey())));
+    }
+
     private boolean isAliasesChanged(LambdaFunction lambdaFunction) {
-        try {
-            ListAliasesResult listAliasesResult = lambdaClient.listAliases(new ListAliasesRequest()
-                    .withFunctionName(lambdaFunction.getFunctionName()));
-            List<String> configuredAliases = listAliasesResult.getAliases().stream()
-                                                              .map(AliasConfiguration::getName)
-                                                              .collect(toList());
-            return !configuredAliases.containsAll(lambdaFunction.getAliases());
-        } catch (ResourceNotFoundException ignored) {
+        FunctionState state = remoteState.get(lambdaFunction);
+        if (!state.exists()) {
             return true;
         }
+        List<String> configuredAliases = state.getAliases().stream()
+                                              .map(AliasConfiguration::getName)
+                                              .collect(toList());
+        return !configuredAliases.containsAll(lambdaFunction.getAliases());
     }
 
-    private Function<LambdaFunction, LambdaFunction> createFunction = (LambdaFunction lambdaFunction) -> {
+    private Function<LambdaFunction, LambdaFunction> sendCreateFunction = (LambdaFunction lambdaFunction) -> {
         getLog().info("About to create function " + lambdaFunction.getFunctionName());
         CreateFunctionRequest createFunctionRequest = new CreateFunctionRequest()
                 .withDescription(lambdaFunction.getDescription())
@@ -506,20 +916,23 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
                 .withTimeout(ofNullable(lambdaFunction.getTimeout()).orElse(timeout))   
                 .withMemorySize(ofNullable(lambdaFunction.getMemorySize()).orElse(memorySize))
                 .withVpcConfig(getVpcConfig(lambdaFunction))
-                .withCode(new FunctionCode()
-                        .withS3Bucket(s3Bucket)
-                        .withS3Key(fileName))
+                .withCode(functionCodeLocation())
+                .withLayers(functionLayers(lambdaFunction))
+                .withSnapStart(snapStart(lambdaFunction))
+                .withArchitectures(lambdaFunction.getArchitecture())
+                .withEphemeralStorage(new EphemeralStorage().withSize(lambdaFunction.getEphemeralStorage()))
+                .withTracingConfig(new TracingConfig().withMode(lambdaFunction.getTracingMode()))
+                .withPublish(lambdaFunction.isPublish())
                 .withEnvironment(new Environment().withVariables(lambdaFunction.getEnvironmentVariables()));
 
-        CreateFunctionResult createFunctionResult = lambdaClient.createFunction(createFunctionRequest);
+        CreateFunctionResult createFunctionResult = lambdaClient().createFunction(createFunctionRequest);
         lambdaFunction.withVersion(createFunctionResult.getVersion())
                       .withFunctionArn(createFunctionResult.getFunctionArn());
         getLog().info("Function " + createFunctionResult.getFunctionName() + " created. Function Arn: " + createFunctionResult.getFunctionArn());
-
-        
         return lambdaFunction;
     };
 
+
     private VpcConfig getVpcConfig(LambdaFunction lambdaFunction) {
         return new VpcConfig()
                 .withSecurityGroupIds(lambdaFunction.getSecurityGroupIds())
@@ -531,9 +944,7 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
      * TODO: Combine with cleanUpOrphanedDynamoDBTriggers.
      */
     Function<LambdaFunction, LambdaFunction> cleanUpOrphanedKinesisTriggers = lambdaFunction -> { 
-        ListEventSourceMappingsResult listEventSourceMappingsResult = 
-                lambdaClient.listEventSourceMappings(new ListEventSourceMappingsRequest()
-                        .withFunctionName(lambdaFunction.getUnqualifiedFunctionArn()));
+        EventSourceMappingIndex eventSourceMappings = remoteState.get(lambdaFunction).getEventSourceMappings();
 
         
         List<String> streamNames = new ArrayList<String>();
@@ -545,15 +956,13 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
             ofNullable(t.getDynamoDBTable()).ifPresent(x -> streamNames.add(x));
         });
 
-        listEventSourceMappingsResult.getEventSourceMappings().stream().forEach(s -> {
+        eventSourceMappings.all().forEach(s -> {
             if ( s.getEventSourceArn().contains(":kinesis:") ) {                
-                if ( ! streamNames.contains(kinesisClient.describeStream(new com.amazonaws.services.kinesis.model.DescribeStreamRequest()
-                        .withStreamName(s.getEventSourceArn().substring(s.getEventSourceArn().lastIndexOf('/')+1)))
-                        .getStreamDescription()
-                        .getStreamName()) ){
+                if ( ! streamNames.contains(EventSourceArns.kinesisStreamName(s.getEventSourceArn())) ){
                     getLog().info("    Removing orphaned Kinesis trigger for stream " + s.getEventSourceArn());
                     try {
-                        lambdaClient.deleteEventSourceMapping(new DeleteEventSourceMappingRequest().withUUID(s.getUUID()));
+                        lambdaClient().deleteEventSourceMapping(new DeleteEventSourceMappingRequest().withUUID(s.getUUID()));
+                        eventSourceMappings.remove(s.getUUID());
                     } catch(Exception e8) {
                         getLog().error("    Error removing orphaned Kinesis trigger for stream " + s.getEventSourceArn());
                     }
@@ -568,70 +977,77 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
      * Removes orphaned sns triggers.
      */
     Function<LambdaFunction, LambdaFunction> cleanUpOrphanedSNSTriggers = lambdaFunction -> {
-        
-        List<Subscription> subscriptions = new ArrayList<Subscription>();
-        ListSubscriptionsResult result = snsClient.listSubscriptions();
-        
-        do {
-            subscriptions.addAll(result.getSubscriptions().stream().filter( sub -> {
-                return sub.getEndpoint().equals(lambdaFunction.getFunctionArn());
-            }).collect(Collectors.toList()));
-            
-            result = snsClient.listSubscriptions(result.getNextToken());
-        } while( result.getNextToken() != null );
-        
-        if (subscriptions.size() > 0 ) {
-            List<String> snsTopicNames = lambdaFunction.getTriggers().stream().map(t -> {
-                return ofNullable(t.getSNSTopic()).orElse("");
-            }).collect(Collectors.toList());
-            
-            subscriptions.stream().forEach(s -> {
-                String topicName = s.getTopicArn().substring(s.getTopicArn().lastIndexOf(":")+1);
-                if (!snsTopicNames.contains(topicName)) {
-                    getLog().info("    Removing orphaned SNS trigger for topic " + topicName);
+        orphanedSubscriptions(lambdaFunction).forEach(s -> {
+            String topicName = s.getTopicArn().substring(s.getTopicArn().lastIndexOf(":")+1);
+            getLog().info("    Removing orphaned SNS trigger for topic " + topicName);
+            try {
+                snsClient().unsubscribe(new UnsubscribeRequest().withSubscriptionArn(s.getSubscriptionArn()));
+
+                snsPermissions(lambdaFunction, s.getTopicArn()).forEach( st -> {
+                    getLog().info("      Removing invoke permission for SNS trigger");
                     try {
-                        snsClient.unsubscribe(new UnsubscribeRequest().withSubscriptionArn(s.getSubscriptionArn()));
-                        
-                        ofNullable(lambdaFunction.getExistingPolicy()).flatMap( policy -> {
-                            policy.getStatements().stream()
-                                .filter(
-                                    stmt -> stmt.getActions().stream().anyMatch( e -> PERM_LAMBDA_INVOKE.equals(e.getActionName())) &&
-                                    stmt.getPrincipals().stream().anyMatch(principal -> PRINCIPAL_SNS.equals(principal.getId())) &&
-                                    stmt.getResources().stream().anyMatch(r -> r.getId().equals(lambdaFunction.getFunctionArn()))
-                                ).forEach( st -> {
-                                    if( st.getConditions().stream().anyMatch(condition -> condition.getValues().contains(s.getTopicArn())) ) {
-                                        getLog().info("      Removing invoke permission for SNS trigger");       
-                                        try {
-                                            lambdaClient.removePermission(new RemovePermissionRequest()
-                                                .withFunctionName(lambdaFunction.getFunctionName())
-                                                .withQualifier(lambdaFunction.getQualifier())
-                                                .withStatementId(st.getId()));
-                                        } catch (Exception e7) {
-                                            getLog().error("      Error removing invoke permission for SNS trigger");
-                                        }
-                                    }
-                                });
-                            return of(policy);
-                        });
-                        
-                    } catch(Exception e5) {
-                        getLog().error("    Error removing SNS trigger for topic " + topicName);
+                        removePermission(lambdaFunction, st.getId());
+                    } catch (Exception e7) {
+                        getLog().error("      Error removing invoke permission for SNS trigger");
                     }
-                }
-            });
-        }
+                });
+            } catch(Exception e5) {
+                getLog().error("    Error removing SNS trigger for topic " + topicName);
+            }
+        });
         
         return lambdaFunction; 
     };
 
+    /*
+     * The subscriptions of the function to SNS topics.
+     */
+    private List<Subscription> snsSubscriptionsOf(LambdaFunction lambdaFunction) {
+        if (scanSNSSubscriptions) {
+            return snsSubscriptions.forEndpoint(lambdaFunction.getFunctionArn());
+        }
+        // Only topics which were granted permission to invoke the function are looked at.
+        List<String> topicArns = ofNullable(lambdaFunction.getExistingPolicy()).map(policy -> policy.getStatements().stream()
+                .filter(stmt -> stmt.getPrincipals().stream().anyMatch(principal -> PRINCIPAL_SNS.equals(principal.getId())))
+                .flatMap(stmt -> stmt.getConditions().stream())
+                .flatMap(condition -> condition.getValues().stream())
+                .filter(value -> value.contains(":sns:"))
+                .collect(toList())).orElse(new ArrayList<>());
+        return snsSubscriptions.forTopics(topicArns, lambdaFunction.getFunctionArn());
+    }
+
+    /*
+     * The subscriptions to topics which are no longer triggers of the function.
+     */
+    private List<Subscription> orphanedSubscriptions(LambdaFunction lambdaFunction) {
+        List<String> snsTopicNames = lambdaFunction.getTriggers().stream().map(t -> {
+            return ofNullable(t.getSNSTopic()).orElse("");
+        }).collect(Collectors.toList());
+
+        return snsSubscriptionsOf(lambdaFunction).stream()
+                .filter(s -> !snsTopicNames.contains(s.getTopicArn().substring(s.getTopicArn().lastIndexOf(":")+1)))
+                .collect(toList());
+    }
+
+    /*
+     * The statements of the function's policy which let the topic invoke the function.
+     */
+    private List<Statement> snsPermissions(LambdaFunction lambdaFunction, String topicArn) {
+        return ofNullable(lambdaFunction.getExistingPolicy()).map(policy -> policy.getStatements().stream()
+                .filter(
+                    stmt -> stmt.getActions().stream().anyMatch( e -> PERM_LAMBDA_INVOKE.equals(e.getActionName())) &&
+                    stmt.getPrincipals().stream().anyMatch(principal -> PRINCIPAL_SNS.equals(principal.getId())) &&
+                    stmt.getResources().stream().anyMatch(r -> r.getId().equals(lambdaFunction.getFunctionArn())) &&
+                    stmt.getConditions().stream().anyMatch(condition -> condition.getValues().contains(topicArn)))
+                .collect(toList())).orElse(new ArrayList<>());
+    }
+
     
     /**
      * Removes orphaned SQS triggers.
      */
     Function<LambdaFunction, LambdaFunction> cleanUpOrphanedSQSTriggers = lambdaFunction -> {
-        ListEventSourceMappingsResult listEventSourceMappingsResult = 
-                lambdaClient.listEventSourceMappings(new ListEventSourceMappingsRequest()
-                        .withFunctionName(lambdaFunction.getUnqualifiedFunctionArn()));
+        EventSourceMappingIndex eventSourceMappings = remoteState.get(lambdaFunction).getEventSourceMappings();
 
         
         List<String> standardQueues = new ArrayList<String>();
@@ -640,25 +1056,18 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
             ofNullable(t.getStandardQueue()).ifPresent(x -> standardQueues.add(x));
         });
         
-        listEventSourceMappingsResult.getEventSourceMappings().stream().forEach(s -> {
+        eventSourceMappings.all().forEach(s -> {
             if ( s.getEventSourceArn().contains(":sqs:")) {
-            	// This API hit may not required, added here only for double check or cross verification
-            	Optional<GetQueueUrlResult> getQueueUrlOptionalResult = ofNullable(sqsClient.getQueueUrl(new GetQueueUrlRequest()
-            			.withQueueName(s.getEventSourceArn().substring(s.getEventSourceArn().lastIndexOf(':')+1))));
-            	
-            	getQueueUrlOptionalResult.ifPresent(queue -> {
-            			String queueName = queue.getQueueUrl().substring(queue.getQueueUrl().lastIndexOf('/')+1);
-	        			if ( ! standardQueues.contains(queueName) ) {    
-	                        getLog().info("    Removing orphaned SQS trigger for queue " + queueName);
-	                        try {    
-	                            lambdaClient.deleteEventSourceMapping(new DeleteEventSourceMappingRequest().withUUID(s.getUUID()));
-	                        } catch (Exception exp) {
-	                            getLog().error("    Error removing SQS trigger for queue " + queueName + ", Error Message :" + exp.getMessage());
-	                        }
-	                    }
-	            	}
-            			
-            	);
+                String queueName = EventSourceArns.sqsQueueName(s.getEventSourceArn());
+                if ( ! standardQueues.contains(queueName) ) {
+                    getLog().info("    Removing orphaned SQS trigger for queue " + queueName);
+                    try {
+                        lambdaClient().deleteEventSourceMapping(new DeleteEventSourceMappingRequest().withUUID(s.getUUID()));
+                        eventSourceMappings.remove(s.getUUID());
+                    } catch (Exception exp) {
+                        getLog().error("    Error removing SQS trigger for queue " + queueName + ", Error Message :" + exp.getMessage());
+                    }
+                }
             }
         });
         
@@ -670,9 +1079,7 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
      * TODO: Combine with cleanUpOrphanedKinesisTriggers
      */
     Function<LambdaFunction, LambdaFunction> cleanUpOrphanedDynamoDBTriggers = lambdaFunction -> {
-        ListEventSourceMappingsResult listEventSourceMappingsResult = 
-                lambdaClient.listEventSourceMappings(new ListEventSourceMappingsRequest()
-                        .withFunctionName(lambdaFunction.getUnqualifiedFunctionArn()));
+        EventSourceMappingIndex eventSourceMappings = remoteState.get(lambdaFunction).getEventSourceMappings();
 
         
         List<String> tableNames = new ArrayList<String>();
@@ -684,17 +1091,17 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
             ofNullable(t.getDynamoDBTable()).ifPresent(x -> tableNames.add(x));
         });
         
-        listEventSourceMappingsResult.getEventSourceMappings().stream().forEach(s -> {
+        eventSourceMappings.all().forEach(s -> {
             if ( s.getEventSourceArn().contains(":dynamodb:")) {
-                StreamDescription sd = dynamoDBStreamsClient.describeStream(new DescribeStreamRequest()
-                    .withStreamArn(s.getEventSourceArn())).getStreamDescription();
+                String tableName = EventSourceArns.dynamoDBTableName(s.getEventSourceArn());
                 
-                if ( ! tableNames.contains(sd.getTableName()) ) {    
-                    getLog().info("    Removing orphaned DynamoDB trigger for table " + sd.getTableName());
+                if ( ! tableNames.contains(tableName) ) {    
+                    getLog().info("    Removing orphaned DynamoDB trigger for table " + tableName);
                     try {    
-                        lambdaClient.deleteEventSourceMapping(new DeleteEventSourceMappingRequest().withUUID(s.getUUID()));
+                        lambdaClient().deleteEventSourceMapping(new DeleteEventSourceMappingRequest().withUUID(s.getUUID()));
+                        eventSourceMappings.remove(s.getUUID());
                     } catch (Exception e4) {
-                        getLog().error("    Error removing DynamoDB trigger for table " + sd.getTableName());
+                        getLog().error("    Error removing DynamoDB trigger for table " + tableName);
                     }
                 }
             }
@@ -706,27 +1113,15 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
     
     /**
      * Removes the Alexa permission if it isn't found in the current configuration.
-     * TODO: Factor out code common with other orphan clean up functions.
      */
     Function<LambdaFunction, LambdaFunction> cleanUpOrphanedAlexaSkillsTriggers = lambdaFunction -> {
-        ofNullable(lambdaFunction.getExistingPolicy()).flatMap( policy -> {
-            policy.getStatements().stream()
-                .filter(
-                    stmt -> stmt.getActions().stream().anyMatch( e -> PERM_LAMBDA_INVOKE.equals(e.getActionName())) &&
-                    stmt.getPrincipals().stream().anyMatch(principal -> PRINCIPAL_ALEXA.equals(principal.getId())) &&
-                    !lambdaFunction.getTriggers().stream().anyMatch( t -> t.getIntegration().equals(TRIG_INT_LABEL_ALEXA_SK)))
-                .forEach( s -> {    
-                    try {
-                        getLog().info("    Removing orphaned Alexa permission " + s.getId());
-                        lambdaClient.removePermission(new RemovePermissionRequest()
-                            .withFunctionName(lambdaFunction.getFunctionName())
-                            .withQualifier(lambdaFunction.getQualifier())
-                            .withStatementId(s.getId()));
-                    } catch (ResourceNotFoundException rnfe1) {
-                        getLog().error("    Error removing permission for " + s.getId() + ": " + rnfe1.getMessage());
-                    }
-                });
-            return of(policy);
+        orphanedAlexaPermissions(lambdaFunction).forEach( s -> {
+            try {
+                getLog().info("    Removing orphaned Alexa permission " + s.getId());
+                removePermission(lambdaFunction, s.getId());
+            } catch (ResourceNotFoundException rnfe1) {
+                getLog().error("    Error removing permission for " + s.getId() + ": " + rnfe1.getMessage());
+            }
         });
                     
         return lambdaFunction; 
@@ -734,36 +1129,80 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
     
     /**
      * Removes any Lex permissions that aren't found in the current configuration.
-     * TODO: Factor out code common with other orphan clean up functions.
      */
     Function<LambdaFunction, LambdaFunction> cleanUpOrphanedLexSkillsTriggers = lambdaFunction -> {
-        ofNullable(lambdaFunction.getExistingPolicy()).flatMap( policy -> {
-            policy.getStatements().stream()
-                .filter(stmt -> stmt.getActions().stream().anyMatch( e -> PERM_LAMBDA_INVOKE.equals(e.getActionName())) &&
-                        stmt.getPrincipals().stream().anyMatch(principal -> PRINCIPAL_LEX.equals(principal.getId())) &&
-                        !lambdaFunction.getTriggers().stream().anyMatch( t -> stmt.getId().contains(ofNullable(t.getLexBotName()).orElse(""))))
-                .forEach( s -> {    
-                    try {
-                        getLog().info("    Removing orphaned Lex permission " + s.getId());
-                        lambdaClient.removePermission(new RemovePermissionRequest()
-                            .withFunctionName(lambdaFunction.getFunctionName())
-                            .withQualifier(lambdaFunction.getQualifier())
-                            .withStatementId(s.getId()));
-                    } catch (Exception ign2) { 
-                        getLog().error("   Error removing permission for " + s.getId() + ign2.getMessage() ); 
-                    }
-                });
-            return of(policy);
+        orphanedLexPermissions(lambdaFunction).forEach( s -> {
+            try {
+                getLog().info("    Removing orphaned Lex permission " + s.getId());
+                removePermission(lambdaFunction, s.getId());
+            } catch (Exception ign2) { 
+                getLog().error("   Error removing permission for " + s.getId() + ign2.getMessage() ); 
+            }
         });
         
         return lambdaFunction;
     };
+
+    /*
+     * The Alexa statements of the function's policy, unless the function has an Alexa trigger.
+     */
+    private List<Statement> orphanedAlexaPermissions(LambdaFunction lambdaFunction) {
+        return invokePermissions(lambdaFunction, PRINCIPAL_ALEXA).stream()
+                .filter(stmt -> lambdaFunction.getTriggers().stream().noneMatch( t -> TRIG_INT_LABEL_ALEXA_SK.equals(t.getIntegration())))
+                .collect(toList());
+    }
+
+    /*
+     * The Lex statements of the function's policy which name none of the function's Lex bots.
+     */
+    private List<Statement> orphanedLexPermissions(LambdaFunction lambdaFunction) {
+        return invokePermissions(lambdaFunction, PRINCIPAL_LEX).stream()
+                .filter(stmt -> lambdaFunction.getTriggers().stream().noneMatch( t -> stmt.getId().contains(ofNullable(t.getLexBotName()).orElse(""))))
+                .collect(toList());
+    }
+
+    /*
+     * The statements of the function's policy which let the principal invoke the function.
+     */
+    private List<Statement> invokePermissions(LambdaFunction lambdaFunction, String principalId) {
+        return ofNullable(lambdaFunction.getExistingPolicy()).map(policy -> policy.getStatements().stream()
+                .filter(stmt -> stmt.getActions().stream().anyMatch( e -> PERM_LAMBDA_INVOKE.equals(e.getActionName())) &&
+                        stmt.getPrincipals().stream().anyMatch(principal -> principalId.equals(principal.getId())))
+                .collect(toList())).orElse(new ArrayList<>());
+    }
     
     Function<LambdaFunction, LambdaFunction> cleanUpOrphanedCloudWatchEventRules = lambdaFunction -> {
         // Get the list of cloudwatch event rules defined for this function (if any).
-        List<String> existingRuleNames = cloudWatchEventsClient.listRuleNamesByTarget(new ListRuleNamesByTargetRequest()
-        .withTargetArn(lambdaFunction.getFunctionArn())).getRuleNames();
+        List<String> existingRuleNames = ofNullable(plannedChange(lambdaFunction))
+                .map(ChangeSet.FunctionChange::getRuleNames)
+                .orElseGet(() -> ruleNamesTargeting(lambdaFunction.getFunctionArn()));
+
+        // For each rule which should no longer be associated to this function, remove the function
+        // as a target and attempt to delete the rule.
+        orphanedRuleNames(lambdaFunction, existingRuleNames).forEach(ern -> {
+            getLog().info("    Removing CloudWatch Event Rule: " + ern);
+            eventsClient().removeTargets(new RemoveTargetsRequest()
+                .withIds("1")
+                .withRule(ern));
+            try {
+                eventsClient().deleteRule(new DeleteRuleRequest().withName(ern));
+            } catch (Exception e) {
+                getLog().error("    Error removing orphaned rule: " + e.getMessage());
+            }
+        });
+        
+        return lambdaFunction;  
+    };
     
+    private List<String> ruleNamesTargeting(String functionArn) {
+        return eventsClient().listRuleNamesByTarget(new ListRuleNamesByTargetRequest()
+                .withTargetArn(functionArn)).getRuleNames();
+    }
+
+    /*
+     * The existing rules which are neither a CloudWatch Events trigger nor the keep alive rule of the function.
+     */
+    private List<String> orphanedRuleNames(LambdaFunction lambdaFunction, List<String> existingRuleNames) {
         // Get the list of cloudwatch event rules to be defined for this function (if any).
         List<String> definedRuleNames = lambdaFunction.getTriggers().stream().filter(
                 t -> TRIG_INT_LABEL_CLOUDWATCH_EVENTS.equals(t.getIntegration())).map(t -> {
@@ -776,72 +1215,363 @@ public class DeployLambdaMojo extends AbstractLambdaMojo {
                definedRuleNames.add(lambdaFunction.getKeepAliveRuleName());
            }
         });
-    
-        // Remove all of the rules that will be defined from the list of existing rules.
-        // The remainder is a set of event rules which should no longer be associated to this
-        // function.
-        existingRuleNames.removeAll(definedRuleNames);
-        
-        // For each remaining rule, remove the function as a target and attempt to delete
-        // the rule.
-        existingRuleNames.stream().forEach(ern -> {
-            getLog().info("    Removing CloudWatch Event Rule: " + ern);
-            cloudWatchEventsClient.removeTargets(new RemoveTargetsRequest()
-                .withIds("1")
-                .withRule(ern));
+
+        return existingRuleNames.stream().filter(name -> !definedRuleNames.contains(name)).collect(toList());
+    }
+
+    /**
+     * Removes statements from the function's policy which repeat an earlier grant, or which let SNS topics and
+     * CloudWatch event rules that are no longer triggers of the function invoke it. Statements with the ids this
+     * plugin assigns are kept in favour of equivalent ones, e.g. with the random ids earlier versions assigned.
+     */
+    Function<LambdaFunction, LambdaFunction> compactFunctionPolicy = lambdaFunction -> {
+        // Applying a change set removes the redundant statements along with the other planned deletions.
+        if (!compactPolicy || lambdaFunction.getExistingPolicy() == null || plannedChange(lambdaFunction) != null) {
+            return lambdaFunction;
+        }
+
+        redundantPermissions(lambdaFunction).forEach((statementId, reason) -> {
+            getLog().info("    Removing " + reason);
             try {
-                cloudWatchEventsClient.deleteRule(new DeleteRuleRequest().withName(ern));
+                removePermission(lambdaFunction, statementId);
             } catch (Exception e) {
-                getLog().error("    Error removing orphaned rule: " + e.getMessage());
+                getLog().error("    Error removing permission " + statementId + ": " + e.getMessage());
             }
         });
-        
-        return lambdaFunction;  
+
+        return lambdaFunction;
     };
-    
-    Function<LambdaFunction, LambdaFunction> cleanUpOrphans = lambdaFunction -> {
-        try {
-            lambdaFunction.setFunctionArn(lambdaClient.getFunction(
-                    new GetFunctionRequest().withFunctionName(lambdaFunction.getFunctionName())).getConfiguration().getFunctionArn());
+
+    /*
+     * The ids of the statements compactFunctionPolicy removes, with the reason why.
+     */
+    private Map<String, String> redundantPermissions(LambdaFunction lambdaFunction) {
+        List<String> topicNames = lambdaFunction.getTriggers().stream()
+                .map(Trigger::getSNSTopic).filter(Objects::nonNull).collect(toList());
+        List<String> ruleNames = lambdaFunction.getTriggers().stream()
+                .filter(t -> TRIG_INT_LABEL_CLOUDWATCH_EVENTS.equals(t.getIntegration()))
+                .map(Trigger::getRuleName).collect(toList());
+        ofNullable(lambdaFunction.getKeepAlive()).filter(ka -> ka > 0).ifPresent(ka -> ruleNames.add(lambdaFunction.getKeepAliveRuleName()));
+
+        Map<String, String> grants = new HashMap<>();
+        Map<String, String> redundant = new LinkedHashMap<>();
+        lambdaFunction.getExistingPolicy().getStatements().stream()
+            .sorted(Comparator.comparing(stmt -> !stmt.getId().startsWith("lambda-maven-plugin-")))
+            .forEach(stmt -> {
+                List<String> sourceArns = sourceArns(stmt);
+                boolean isSNS = stmt.getPrincipals().stream().anyMatch(principal -> PRINCIPAL_SNS.equals(principal.getId()));
+                boolean isEvents = stmt.getPrincipals().stream().anyMatch(principal -> PRINCIPAL_EVENTS.equals(principal.getId()));
+                boolean isStale = !sourceArns.isEmpty() && (
+                        isSNS && sourceArns.stream().noneMatch(arn -> topicNames.contains(arn.substring(arn.lastIndexOf(':') + 1))) ||
+                        isEvents && sourceArns.stream().noneMatch(arn -> ruleNames.contains(arn.substring(arn.lastIndexOf('/') + 1))));
+                String grant = stmt.getEffect() + " " +
+                        stmt.getPrincipals().stream().map(principal -> principal.getId()).sorted().collect(toList()) +
+                        stmt.getActions().stream().map(action -> action.getActionName()).sorted().collect(toList()) +
+                        stmt.getConditions().stream().map(c -> c.getType() + c.getConditionKey() + c.getValues()).sorted().collect(toList());
+                String duplicateOf = isStale ? null : grants.putIfAbsent(grant, stmt.getId());
+
+                if (isStale || duplicateOf != null) {
+                    redundant.put(stmt.getId(), isStale ? "stale permission " + stmt.getId() : "permission " + stmt.getId() + ", a duplicate of " + duplicateOf);
+                }
+            });
+        return redundant;
+    }
+
+    /**
+     * The clean up of orphaned triggers of the function. Each integration is cleaned up independently of the others,
+     * except for SNS, Alexa and Lex, which remove permissions from the function's policy one after the other. When a
+     * change set is applied, the deletions it planned are made instead.
+     *
+     * @param lambdaFunction a function
+     * @return the steps, none if the function doesn't exist yet
+     */
+    StepGraph<LambdaFunction> cleanUpSteps(LambdaFunction lambdaFunction) {
+        StepGraph<LambdaFunction> steps = new StepGraph<>();
+        FunctionState state = remoteState.get(lambdaFunction);
+        if (state.exists()) {
+            lambdaFunction.setFunctionArn(state.getConfiguration().getFunctionArn());
             
             getLog().info("Cleaning up orphaned triggers.");
+
+            ChangeSet.FunctionChange planned = plannedChange(lambdaFunction);
+            if (planned != null) {
+                steps.add("planned deletions", lf -> async(lf, f -> {
+                    planned.getDeletions().forEach(deletion -> delete(f, deletion));
+                    return f;
+                }));
+                return steps;
+            }
             
             // Add clean up orphaned trigger functions for each integration here:
-            cleanUpOrphanedCloudWatchEventRules
-                .andThen(cleanUpOrphanedDynamoDBTriggers)
-                .andThen(cleanUpOrphanedKinesisTriggers)
-                .andThen(cleanUpOrphanedSNSTriggers)
-                .andThen(cleanUpOrphanedAlexaSkillsTriggers)
-                .andThen(cleanUpOrphanedLexSkillsTriggers)
-                .andThen(cleanUpOrphanedSQSTriggers)
-                .apply(lambdaFunction);
-            
-        } catch (ResourceNotFoundException ign1) {
+            steps.add("CloudWatch Events", lf -> async(lf, cleanUpOrphanedCloudWatchEventRules))
+                 .add("DynamoDB", lf -> async(lf, cleanUpOrphanedDynamoDBTriggers))
+                 .add("Kinesis", lf -> async(lf, cleanUpOrphanedKinesisTriggers))
+                 .add("SNS", lf -> async(lf, cleanUpOrphanedSNSTriggers))
+                 .add("Alexa", lf -> async(lf, cleanUpOrphanedAlexaSkillsTriggers), "SNS")
+                 .add("Lex", lf -> async(lf, cleanUpOrphanedLexSkillsTriggers), "Alexa")
+                 .add("SQS", lf -> async(lf, cleanUpOrphanedSQSTriggers));
+        } else {
             getLog().debug("Assuming function has no orphan triggers to clean up since it doesn't exist yet.");
         }
-            
-        return lambdaFunction;  
-    };
+        return steps;
+    }
 
-    Function<LambdaFunction, LambdaFunction> createOrUpdate = lambdaFunction -> {
-      try {
-          lambdaFunction.setFunctionArn(lambdaClient.getFunction(
-                  new GetFunctionRequest().withFunctionName(lambdaFunction.getFunctionName())).getConfiguration().getFunctionArn());
-          of(getFunction(lambdaFunction))
-                  .filter(getFunctionResult -> shouldUpdate(lambdaFunction, getFunctionResult))
-                  .map(getFujnctionResult ->
-                  updateFunctionCode
-                          .andThen(updateFunctionConfig)
-                          .andThen(createOrUpdateAliases)
-                          .andThen(createOrUpdateTriggers)
-                          .andThen(createOrUpdateKeepAlive)
-                          .apply(lambdaFunction));
-      } catch (ResourceNotFoundException ign) {
-          createFunction.andThen(createOrUpdateAliases)
-                        .andThen(createOrUpdateTriggers)
-                        .apply(lambdaFunction);
-      }
-                      
-      return lambdaFunction;
-    };
+    /*
+     * Makes a deletion of a change set. Like the clean up steps, failures are logged and don't fail the function.
+     */
+    private void delete(LambdaFunction lambdaFunction, ChangeSet.Deletion deletion) {
+        getLog().info("    Removing " + deletion.getDescription());
+        try {
+            switch (deletion.getKind()) {
+                case RULE:
+                    eventsClient().removeTargets(new RemoveTargetsRequest().withIds("1").withRule(deletion.getId()));
+                    eventsClient().deleteRule(new DeleteRuleRequest().withName(deletion.getId()));
+                    break;
+                case EVENT_SOURCE_MAPPING:
+                    lambdaClient().deleteEventSourceMapping(new DeleteEventSourceMappingRequest().withUUID(deletion.getId()));
+                    remoteState.get(lambdaFunction).getEventSourceMappings().remove(deletion.getId());
+                    break;
+                case SUBSCRIPTION:
+                    snsClient().unsubscribe(new UnsubscribeRequest().withSubscriptionArn(deletion.getId()));
+                    break;
+                case PERMISSION:
+                    removePermission(lambdaFunction, deletion.getId());
+                    break;
+            }
+        } catch (Exception e) {
+            getLog().error("    Error removing " + deletion.getDescription() + ": " + e.getMessage());
+        }
+    }
+
+    /*
+     * The version a function which isn't updated runs: the version its first alias points to, or $LATEST.
+     */
+    private static String deployedVersion(LambdaFunction lambdaFunction, FunctionState state) {
+        return state.getAliases().stream()
+                    .filter(alias -> lambdaFunction.getAliases().contains(alias.getName()))
+                    .map(AliasConfiguration::getFunctionVersion)
+                    .findFirst()
+                    .orElse(state.getConfiguration().getVersion());
+    }
+
+    /**
+     * The creation or update of the function, its aliases, triggers and keep alive rule. Aliases depend on the
+     * version the code update or creation published, and on its warm-up if configured. Everything else waits until
+     * the function's configuration is updated, so nothing else changes the function while Lambda applies the update.
+     * The keep alive rule and the triggers which add permissions run one after the other, as each of them changes the
+     * function's policy. Event source mappings only need the function.
+     * When a change set is applied, only the triggers it plans to create or update are, even for unchanged functions.
+     *
+     * @param lambdaFunction a function
+     * @return the steps, none if the function needn't be updated
+     */
+    StepGraph<LambdaFunction> createOrUpdateSteps(LambdaFunction lambdaFunction) {
+        StepGraph<LambdaFunction> steps = new StepGraph<>();
+        FunctionState state = remoteState.get(lambdaFunction);
+        String function;
+        String version;
+        if (state.exists()) {
+            lambdaFunction.setFunctionArn(state.getConfiguration().getFunctionArn());
+            if (!shouldUpdate(lambdaFunction, state.getConfiguration())) {
+                lambdaFunction.setVersion(deployedVersion(lambdaFunction, state));
+                if (plannedChange(lambdaFunction) != null) {
+                    addTriggerSteps(steps, lambdaFunction, null, null);
+                }
+                return steps;
+            }
+            if (lambdaFunction.isPublish()) {
+                // Aliases wait for the version, which is published once the code and configuration are in place.
+                steps.add("code", sendAndAwait(lf -> sendFunctionCode(lf, false), "UpdateFunctionCode"))
+                     .add("configuration", sendAndAwait(sendFunctionConfig, "UpdateFunctionConfiguration"), "code")
+                     .add("publish", sendAndAwaitVersion(sendPublishVersion, "PublishVersion"), "configuration");
+                version = "publish";
+            } else {
+                steps.add("code", sendAndAwait(sendFunctionCode, "UpdateFunctionCode"))
+                     .add("configuration", sendAndAwait(sendFunctionConfig, "UpdateFunctionConfiguration"), "code");
+                version = "code";
+            }
+            function = "configuration";
+        } else {
+            steps.add("create", sendAndAwaitVersion(sendCreateFunction, "CreateFunction"));
+            version = "create";
+            function = "create";
+        }
+        if (lambdaFunction.getWarmUpConcurrency() > 0) {
+            steps.add("warm up", warmUp, version);
+            version = "warm up";
+        }
+        steps.add("aliases", lf -> async(lf, createOrUpdateAliases), version)
+             .add("reserved concurrency", lf -> async(lf, putReservedConcurrency), function)
+             .add("provisioned concurrency", provisionConcurrency, "aliases");
+        // The keep alive rule and the triggers add permissions to the function's policy, one after the other.
+        String policy = function;
+        if (state.exists()) {
+            steps.add("keep alive", lf -> async(lf, createOrUpdateKeepAlive), function);
+            policy = "keep alive";
+        }
+        addTriggerSteps(steps, lambdaFunction, function, policy);
+        return steps;
+    }
+
+    /*
+     * Adds the triggers. Event source mappings run after the function step, and triggers which add permissions run
+     * one after the other, starting after the policy step. Either step may be null if there is none to wait for.
+     * Triggers a change set leaves unchanged are skipped.
+     */
+    private void addTriggerSteps(StepGraph<LambdaFunction> steps, LambdaFunction lambdaFunction, String function, String policy) {
+        ChangeSet.FunctionChange planned = plannedChange(lambdaFunction);
+        for (int i = 0; i < lambdaFunction.getTriggers().size(); i++) {
+            if (planned != null && planned.getTriggers().get(i).getAction() == ChangeSet.Action.UNCHANGED) {
+                continue;
+            }
+            Trigger trigger = lambdaFunction.getTriggers().get(i);
+            boolean changesPolicy = !isEventSourceMapping(trigger);
+            String after = changesPolicy ? policy : function;
+            steps.add("trigger " + i, lf -> async(lf, f -> {
+                createOrUpdateTrigger.apply(trigger, f);
+                return f;
+            }), after == null ? new String[0] : new String[] { after });
+            if (changesPolicy) {
+                policy = "trigger " + i;
+            }
+        }
+    }
+
+    private static boolean isEventSourceMapping(Trigger trigger) {
+        return asList(TRIG_INT_LABEL_DYNAMO_DB, TRIG_INT_LABEL_KINESIS, TRIG_INT_LABEL_SQS).contains(trigger.getIntegration());
+    }
+
+    Function<LambdaFunction, LambdaFunction> cleanUpOrphans = lambdaFunction -> cleanUpSteps(lambdaFunction).runAndWait(lambdaFunction);
+
+    Function<LambdaFunction, LambdaFunction> createOrUpdate = lambdaFunction -> createOrUpdateSteps(lambdaFunction).runAndWait(lambdaFunction);
+
+    private ChangeSet.FunctionChange plannedChange(LambdaFunction lambdaFunction) {
+        return plannedChanges == null ? null : plannedChanges.get(manifestKey(lambdaFunction));
+    }
+
+    /**
+     * Works out what deploying the function would create, update or delete, and keeps everything the deployment
+     * reads about the function, so that applying the change needs no further reads.
+     *
+     * @param lambdaFunction a function
+     * @return the planned change
+     */
+    ChangeSet.FunctionChange planChange(LambdaFunction lambdaFunction) {
+        FunctionState state = remoteState.get(lambdaFunction);
+        ChangeSet.Action action = !state.exists() ? ChangeSet.Action.CREATE
+                : shouldUpdate(lambdaFunction, state.getConfiguration()) ? ChangeSet.Action.UPDATE : ChangeSet.Action.UNCHANGED;
+        ChangeSet.FunctionChange change = new ChangeSet.FunctionChange(lambdaFunction.getFunctionName(), action,
+                configurationHashOf(lambdaFunction), state);
+        change.setKeepAliveChanged(isKeepAliveChanged(lambdaFunction));
+        change.setScheduleRuleChanged(isScheduleRuleChanged(lambdaFunction));
+
+        List<String> ruleNames = new ArrayList<>();
+        if (state.exists()) {
+            lambdaFunction.setFunctionArn(state.getConfiguration().getFunctionArn());
+            lambdaFunction.setExistingPolicy(state.getPolicy());
+            ruleNames = ruleNamesTargeting(state.getConfiguration().getFunctionArn());
+            change.setRuleNames(ruleNames);
+        }
+
+        // Triggers are created or updated along with their function, and created if they are missing.
+        for (Trigger trigger : lambdaFunction.getTriggers()) {
+            ChangeSet.Action triggerAction = action == ChangeSet.Action.CREATE || !isTriggerDeployed(lambdaFunction, trigger, ruleNames)
+                    ? ChangeSet.Action.CREATE : action;
+            change.getTriggers().add(new ChangeSet.TriggerChange(
+                    trigger.getIntegration(),
+                    ObjectUtils.firstNonNull(trigger.getSNSTopic(), trigger.getRuleName(), trigger.getKinesisStream(),
+                                             trigger.getDynamoDBTable(), trigger.getStandardQueue(), trigger.getLexBotName()),
+                    sourceArn(lambdaFunction, trigger),
+                    triggerAction));
+        }
+
+        if (state.exists()) {
+            orphanedRuleNames(lambdaFunction, ruleNames).forEach(name ->
+                    change.addDeletion(ChangeSet.DeletionKind.RULE, name, "CloudWatch Events rule " + name));
+            state.getEventSourceMappings().all().stream()
+                    .filter(mapping -> isOrphaned(lambdaFunction, mapping))
+                    .forEach(mapping -> change.addDeletion(ChangeSet.DeletionKind.EVENT_SOURCE_MAPPING, mapping.getUUID(),
+                            "event source mapping " + mapping.getEventSourceArn()));
+            orphanedSubscriptions(lambdaFunction).forEach(subscription -> {
+                change.addDeletion(ChangeSet.DeletionKind.SUBSCRIPTION, subscription.getSubscriptionArn(),
+                        "SNS subscription to " + subscription.getTopicArn());
+                snsPermissions(lambdaFunction, subscription.getTopicArn()).forEach(stmt ->
+                        change.addDeletion(ChangeSet.DeletionKind.PERMISSION, stmt.getId(), "SNS permission " + stmt.getId()));
+            });
+            orphanedAlexaPermissions(lambdaFunction).forEach(stmt ->
+                    change.addDeletion(ChangeSet.DeletionKind.PERMISSION, stmt.getId(), "Alexa permission " + stmt.getId()));
+            orphanedLexPermissions(lambdaFunction).forEach(stmt ->
+                    change.addDeletion(ChangeSet.DeletionKind.PERMISSION, stmt.getId(), "Lex permission " + stmt.getId()));
+            if (compactPolicy && lambdaFunction.getExistingPolicy() != null) {
+                redundantPermissions(lambdaFunction).forEach((statementId, reason) ->
+                        change.addDeletion(ChangeSet.DeletionKind.PERMISSION, statementId, reason));
+            }
+        }
+        return change;
+    }
+
+    /*
+     * Whether the trigger's rule, event source mapping, subscription or permission already exists.
+     */
+    private boolean isTriggerDeployed(LambdaFunction lambdaFunction, Trigger trigger, List<String> ruleNames) {
+        List<EventSourceMappingConfiguration> mappings = remoteState.get(lambdaFunction).getEventSourceMappings().all();
+        switch (trigger.getIntegration()) {
+            case TRIG_INT_LABEL_CLOUDWATCH_EVENTS:
+                return ruleNames.contains(trigger.getRuleName());
+            case TRIG_INT_LABEL_DYNAMO_DB:
+                return mappings.stream().anyMatch(m -> m.getEventSourceArn().contains(":dynamodb:")
+                        && EventSourceArns.dynamoDBTableName(m.getEventSourceArn()).equals(trigger.getDynamoDBTable()));
+            case TRIG_INT_LABEL_KINESIS:
+                return mappings.stream().anyMatch(m -> m.getEventSourceArn().contains(":kinesis:")
+                        && EventSourceArns.kinesisStreamName(m.getEventSourceArn()).equals(trigger.getKinesisStream()));
+            case TRIG_INT_LABEL_SQS:
+                return mappings.stream().anyMatch(m -> m.getEventSourceArn().contains(":sqs:")
+                        && EventSourceArns.sqsQueueName(m.getEventSourceArn()).equals(trigger.getStandardQueue()));
+            case TRIG_INT_LABEL_SNS:
+                return snsSubscriptionsOf(lambdaFunction).stream().anyMatch(s ->
+                        s.getTopicArn().substring(s.getTopicArn().lastIndexOf(":")+1).equals(trigger.getSNSTopic()));
+            case TRIG_INT_LABEL_ALEXA_SK:
+                return !invokePermissions(lambdaFunction, PRINCIPAL_ALEXA).isEmpty();
+            case TRIG_INT_LABEL_LEX:
+                return invokePermissions(lambdaFunction, PRINCIPAL_LEX).stream()
+                        .anyMatch(stmt -> stmt.getId().contains(ofNullable(trigger.getLexBotName()).orElse("")));
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * Whether one of the cleanUpOrphaned...Triggers steps would delete the mapping.
+     */
+    private boolean isOrphaned(LambdaFunction lambdaFunction, EventSourceMappingConfiguration mapping) {
+        String arn = mapping.getEventSourceArn();
+        List<String> names = new ArrayList<>();
+        lambdaFunction.getTriggers().forEach(t -> {
+            if (arn.contains(":sqs:")) {
+                ofNullable(t.getStandardQueue()).ifPresent(names::add);
+            } else {
+                ofNullable(t.getKinesisStream()).ifPresent(names::add);
+                ofNullable(t.getDynamoDBTable()).ifPresent(names::add);
+            }
+        });
+        if (arn.contains(":kinesis:")) {
+            return !names.contains(EventSourceArns.kinesisStreamName(arn));
+        } else if (arn.contains(":dynamodb:")) {
+            return !names.contains(EventSourceArns.dynamoDBTableName(arn));
+        } else if (arn.contains(":sqs:")) {
+            return !names.contains(EventSourceArns.sqsQueueName(arn));
+        }
+        return false;
+    }
+
+    /*
+     * The same steps as createOrUpdate for the async engine. Waits for the function to become ready again are
+     * separate stages, so no thread is held while Lambda applies an update.
+     */
+    Function<LambdaFunction, CompletableFuture<LambdaFunction>> createOrUpdateAsync = lambdaFunction ->
+        async(lambdaFunction, getFunctionPolicy.andThen(this::cleanUpSteps))
+            .thenCompose(steps -> steps.run(lambdaFunction))
+            .thenCompose(lf -> async(lf, this::createOrUpdateSteps))
+            .thenCompose(steps -> steps.run(lambdaFunction))
+            .thenCompose(lf -> async(lf, compactFunctionPolicy.andThen(recordDeployment)));
 }
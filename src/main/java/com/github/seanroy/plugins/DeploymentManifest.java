@@ -0,0 +1,120 @@
+package com.github.seanroy.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.seanroy.utils.JsonUtil;
+
+/**
+ * I am a record of what was deployed by previous builds. For every function I remember the hash of the deliverable,
+ * the hash of the function's resolved configuration and the version and ARN the deployment resulted in, so that
+ * functions whose inputs haven't changed can be skipped without asking AWS.
+ *
+ * @author sean
+ */
+public class DeploymentManifest {
+
+    /**
+     * I am what is known about the last deployment of one function.
+     */
+    public static class Entry {
+        private String artifactSha256;
+        private String configurationHash;
+        private String version;
+        private String functionArn;
+        private List<String> aliases;
+
+        public Entry() {
+        }
+
+        public Entry(String artifactSha256, String configurationHash, String version, String functionArn, List<String> aliases) {
+            this.artifactSha256 = artifactSha256;
+            this.configurationHash = configurationHash;
+            this.version = version;
+            this.functionArn = functionArn;
+            this.aliases = aliases;
+        }
+
+        public String getArtifactSha256() {
+            return artifactSha256;
+        }
+
+        public String getConfigurationHash() {
+            return configurationHash;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getFunctionArn() {
+            return functionArn;
+        }
+
+        public List<String> getAliases() {
+            return aliases;
+        }
+
+        public boolean matches(String artifactSha256, String configurationHash) {
+            return artifactSha256.equals(this.artifactSha256) && configurationHash.equals(this.configurationHash);
+        }
+    }
+
+    private Map<String, Entry> functions = new ConcurrentHashMap<>();
+    private transient Map<String, Entry> recorded = new ConcurrentHashMap<>();
+
+    /**
+     * Reads the manifest, or returns an empty one if the file doesn't exist or can't be read.
+     *
+     * @param file the manifest file
+     * @return the manifest
+     */
+    public static DeploymentManifest load(File file) {
+        if (file != null && file.isFile()) {
+            try {
+                DeploymentManifest manifest = JsonUtil.mapper.readValue(file, DeploymentManifest.class);
+                manifest.functions = new ConcurrentHashMap<>(manifest.functions);
+                return manifest;
+            } catch (IOException ignored) {
+                // An unreadable manifest just means every function is deployed.
+            }
+        }
+        return new DeploymentManifest();
+    }
+
+    /**
+     * Writes the deployments recorded since the manifest was loaded into the file. Deployments other builds or other
+     * regions wrote to the file in the meantime are kept.
+     *
+     * @param file the manifest file
+     * @throws IOException if the manifest can't be written
+     */
+    public void save(File file) throws IOException {
+        synchronized (DeploymentManifest.class) {
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            DeploymentManifest sorted = new DeploymentManifest();
+            sorted.functions = new TreeMap<>(load(file).functions);
+            sorted.functions.putAll(recorded);
+            JsonUtil.mapper.writerWithDefaultPrettyPrinter().writeValue(file, sorted);
+        }
+    }
+
+    /**
+     * @param key region and name of the function
+     * @return the last deployment of the function, or null if it isn't known
+     */
+    public Entry get(String key) {
+        return functions.get(key);
+    }
+
+    public void put(String key, Entry entry) {
+        functions.put(key, entry);
+        recorded.put(key, entry);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.seanroy.plugins;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.amazonaws.services.lambda.model.EventSourceMappingConfiguration;
+
+/**
+ * I am the event source mappings of a lambda function, read once and keyed by event source ARN. Creating, updating
+ * and cleaning up triggers all go through me, and I am kept up to date as mappings are created and deleted, so no
+ * step needs to list the mappings again.
+ *
+ * @author sean
+ */
+public class EventSourceMappingIndex {
+    private final Map<String, List<EventSourceMappingConfiguration>> mappings = new LinkedHashMap<>();
+
+    public EventSourceMappingIndex(Collection<EventSourceMappingConfiguration> mappings) {
+        mappings.forEach(this::put);
+    }
+
+    /**
+     * @param eventSourceArn ARN of a stream or queue
+     * @param functionArn ARN the mapping invokes, mappings of aliases and versions have a qualified ARN
+     * @return the mapping from the event source to the function
+     */
+    public synchronized Optional<EventSourceMappingConfiguration> find(String eventSourceArn, String functionArn) {
+        return mappings.getOrDefault(eventSourceArn, new ArrayList<>()).stream()
+                       .filter(mapping -> Objects.equals(mapping.getFunctionArn(), functionArn))
+                       .findFirst();
+    }
+
+    /**
+     * @return all mappings, in the order they were listed
+     */
+    public synchronized List<EventSourceMappingConfiguration> all() {
+        List<EventSourceMappingConfiguration> all = new ArrayList<>();
+        mappings.values().forEach(all::addAll);
+        return all;
+    }
+
+    /**
+     * Adds a mapping, replacing any mapping with the same UUID.
+     *
+     * @param mapping the mapping as created or updated
+     */
+    public synchronized void put(EventSourceMappingConfiguration mapping) {
+        remove(mapping.getUUID());
+        mappings.computeIfAbsent(mapping.getEventSourceArn(), arn -> new ArrayList<>()).add(mapping);
+    }
+
+    public synchronized void remove(String uuid) {
+        mappings.values().forEach(list -> list.removeIf(mapping -> Objects.equals(mapping.getUUID(), uuid)));
+        mappings.values().removeIf(List::isEmpty);
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.seanroy.plugins;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.amazonaws.auth.policy.Policy;
+import com.amazonaws.services.lambda.model.AliasConfiguration;
+import com.amazonaws.services.lambda.model.EventSourceMappingConfiguration;
+import com.amazonaws.services.lambda.model.FunctionConfiguration;
+import com.github.seanroy.utils.Lazy;
+
+/**
+ * I am the state of a lambda function in AWS as read at the start of a build. The configuration is read up front,
+ * everything else is read at most once, the first time it is needed.
+ *
+ * @author sean
+ */
+public class FunctionState {
+    private final FunctionConfiguration configuration;
+    private final Lazy<Policy> policy;
+    private final Lazy<List<AliasConfiguration>> aliases;
+    private final Lazy<EventSourceMappingIndex> eventSourceMappings;
+    private final Lazy<Integer> reservedConcurrency;
+    private final Lazy<Map<String, Integer>> provisionedConcurrency;
+
+    /**
+     * @return the state of a function which doesn't exist in AWS
+     */
+    public static FunctionState absent() {
+        return new FunctionState(null, () -> null, () -> emptyList(), () -> emptyList(), () -> null, () -> emptyMap());
+    }
+
+    public FunctionState(FunctionConfiguration configuration,
+                         Supplier<Policy> policy,
+                         Supplier<List<AliasConfiguration>> aliases,
+                         Supplier<List<EventSourceMappingConfiguration>> eventSourceMappings,
+                         Supplier<Integer> reservedConcurrency,
+                         Supplier<Map<String, Integer>> provisionedConcurrency) {
+        this.configuration = configuration;
+        this.policy = new Lazy<>(policy);
+        this.aliases = new Lazy<>(aliases);
+        this.eventSourceMappings = new Lazy<>(() -> new EventSourceMappingIndex(eventSourceMappings.get()));
+        this.reservedConcurrency = new Lazy<>(reservedConcurrency);
+        this.provisionedConcurrency = new Lazy<>(provisionedConcurrency);
+    }
+
+    public boolean exists() {
+        return configuration != null;
+    }
+
+    /**
+     * @return the function's configuration, or null if the function doesn't exist
+     */
+    public FunctionConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * @return the function's resource policy, or null if it has none
+     */
+    public Policy getPolicy() {
+        return policy.get();
+    }
+
+    public List<AliasConfiguration> getAliases() {
+        return aliases.get();
+    }
+
+    /**
+     * @return the function's event source mappings, listed the first time they are needed
+     */
+    public EventSourceMappingIndex getEventSourceMappings() {
+        return eventSourceMappings.get();
+    }
+
+    /**
+     * @return the function's reserved concurrent executions, or null if none are reserved
+     */
+    public Integer getReservedConcurrency() {
+        return reservedConcurrency.get();
+    }
+
+    public boolean isReservedConcurrencyRead() {
+        return reservedConcurrency.isInitialized();
+    }
+
+    /**
+     * @return the requested provisioned concurrent executions keyed by alias or version
+     */
+    public Map<String, Integer> getProvisionedConcurrency() {
+        return provisionedConcurrency.get();
+    }
+
+    public boolean isProvisionedConcurrencyRead() {
+        return provisionedConcurrency.isInitialized();
+    }
+}
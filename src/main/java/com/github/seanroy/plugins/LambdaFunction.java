@@ -45,6 +45,22 @@ public class LambdaFunction {
      * <p>@see {@link AbstractLambdaMojo}</p>
      */
     private Integer timeout;
+    /**
+     * <p>@see {@link AbstractLambdaMojo}</p>
+     */
+    private String architecture;
+    /**
+     * <p>@see {@link AbstractLambdaMojo}</p>
+     */
+    private Integer ephemeralStorage;
+    /**
+     * <p>@see {@link AbstractLambdaMojo}</p>
+     */
+    private String tracingMode;
+    /**
+     * <p>@see {@link AbstractLambdaMojo}</p>
+     */
+    private Boolean lambdaInsights;
     /**
      * <p>@see {@link AbstractLambdaMojo}</p>
      */
@@ -73,6 +89,26 @@ public class LambdaFunction {
      * </p>
      */
     private Boolean publish;
+    /**
+     * <p>@see {@link AbstractLambdaMojo}</p>
+     */
+    private Boolean snapStart;
+    /**
+     * <p>@see {@link AbstractLambdaMojo}</p>
+     */
+    private Integer reservedConcurrency;
+    /**
+     * <p>Concurrent executions to provision for aliases of the function, keyed by alias name.</p>
+     */
+    private Map<String, Integer> provisionedConcurrency;
+    /**
+     * <p>@see {@link AbstractLambdaMojo}</p>
+     */
+    private Integer warmUpConcurrency;
+    /**
+     * <p>@see {@link AbstractLambdaMojo}</p>
+     */
+    private String warmUpPayload;
     /**
      * <p>
      * The Amazon Resource Name (ARN) of the IAM role that Lambda will assume when it executes your function.
@@ -192,6 +228,14 @@ public class LambdaFunction {
         this.publish = publish;
     }
 
+    public Boolean isSnapStart() {
+        return snapStart;
+    }
+
+    public void setSnapStart(Boolean snapStart) {
+        this.snapStart = snapStart;
+    }
+
     public String getLambdaRoleArn() { return lambdaRoleArn; }
 
     public void setLambdaRoleArn(String lambdaRoleArn) { this.lambdaRoleArn = lambdaRoleArn; }
@@ -288,6 +332,115 @@ public class LambdaFunction {
         return this;
     }
 
+    public String getArchitecture() {
+        return architecture;
+    }
+
+    public void setArchitecture(String architecture) {
+        this.architecture = architecture;
+    }
+
+    public Integer getEphemeralStorage() {
+        return ephemeralStorage;
+    }
+
+    public void setEphemeralStorage(Integer ephemeralStorage) {
+        this.ephemeralStorage = ephemeralStorage;
+    }
+
+    public String getTracingMode() {
+        return tracingMode;
+    }
+
+    public void setTracingMode(String tracingMode) {
+        this.tracingMode = tracingMode;
+    }
+
+    public Boolean isLambdaInsights() {
+        return lambdaInsights;
+    }
+
+    public void setLambdaInsights(Boolean lambdaInsights) {
+        this.lambdaInsights = lambdaInsights;
+    }
+
+    public LambdaFunction withArchitecture(String architecture) {
+        this.architecture = architecture;
+        return this;
+    }
+
+    public LambdaFunction withEphemeralStorage(Integer ephemeralStorage) {
+        this.ephemeralStorage = ephemeralStorage;
+        return this;
+    }
+
+    public LambdaFunction withTracingMode(String tracingMode) {
+        this.tracingMode = tracingMode;
+        return this;
+    }
+
+    public LambdaFunction withLambdaInsights(Boolean lambdaInsights) {
+        this.lambdaInsights = lambdaInsights;
+        return this;
+    }
+
+    public Integer getReservedConcurrency() {
+        return reservedConcurrency;
+    }
+
+    public void setReservedConcurrency(Integer reservedConcurrency) {
+        this.reservedConcurrency = reservedConcurrency;
+    }
+
+    public Map<String, Integer> getProvisionedConcurrency() {
+        return provisionedConcurrency;
+    }
+
+    public void setProvisionedConcurrency(Map<String, Integer> provisionedConcurrency) {
+        this.provisionedConcurrency = provisionedConcurrency;
+    }
+
+    public LambdaFunction withReservedConcurrency(Integer reservedConcurrency) {
+        this.reservedConcurrency = reservedConcurrency;
+        return this;
+    }
+
+    public LambdaFunction withProvisionedConcurrency(Map<String, Integer> provisionedConcurrency) {
+        this.provisionedConcurrency = provisionedConcurrency;
+        return this;
+    }
+
+    public Integer getWarmUpConcurrency() {
+        return warmUpConcurrency;
+    }
+
+    public void setWarmUpConcurrency(Integer warmUpConcurrency) {
+        this.warmUpConcurrency = warmUpConcurrency;
+    }
+
+    public String getWarmUpPayload() {
+        return warmUpPayload;
+    }
+
+    public void setWarmUpPayload(String warmUpPayload) {
+        this.warmUpPayload = warmUpPayload;
+    }
+
+    public LambdaFunction withWarmUpConcurrency(Integer warmUpConcurrency) {
+        this.warmUpConcurrency = warmUpConcurrency;
+        return this;
+    }
+
+    public LambdaFunction withWarmUpPayload(String warmUpPayload) {
+        this.warmUpPayload = warmUpPayload;
+        return this;
+    }
+
+    public LambdaFunction withSnapStart(Boolean snapStart) {
+        this.snapStart = snapStart;
+        return this;
+    }
+
     public LambdaFunction withLambdaRoleArn(String lambdaRoleArn) {
         this.lambdaRoleArn = lambdaRoleArn;
         return this;
@@ -340,11 +493,19 @@ public class LambdaFunction {
                 .append(", handler='").append(handler).append('\'')
                 .append(", memorySize=").append(memorySize)
                 .append(", timeout=").append(timeout)
+                .append(", architecture='").append(architecture).append('\'')
+                .append(", ephemeralStorage=").append(ephemeralStorage)
+                .append(", tracingMode='").append(tracingMode).append('\'')
+                .append(", lambdaInsights=").append(lambdaInsights)
                 .append(", version='").append(version).append('\'')
                 .append(", securityGroupIds=").append(securityGroupIds)
                 .append(", subnetIds=").append(subnetIds)
                 .append(", aliases=").append(aliases)
                 .append(", publish=").append(publish)
+                .append(", snapStart=").append(snapStart)
+                .append(", reservedConcurrency=").append(reservedConcurrency)
+                .append(", provisionedConcurrency=").append(provisionedConcurrency)
+                .append(", warmUpConcurrency=").append(warmUpConcurrency)
                 .append(", lambdaRoleArn=").append(lambdaRoleArn)
                 .append(", triggers=").append(triggers)
                 .append(", keepAlive=").append(keepAlive)
@@ -0,0 +1,49 @@
+package com.github.seanroy.plugins;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * I am a plan mojo responsible to work out what the deploy mojo would change in AWS, without changing anything, and
+ * to write the changes to a change set the apply mojo can execute.
+ *
+ * @author sean
+ */
+@Mojo(name = "plan", threadSafe = true)
+public class PlanLambdaMojo extends DeployLambdaMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if(checkSkip()) return;
+        if (isMultiRegion()) {
+            throw new MojoExecutionException("The plan goal works on a single region. Set region instead of regions.");
+        }
+        initialize();
+        findDependencyLayer();
+
+        Map<String, ChangeSet.FunctionChange> changes = new ConcurrentHashMap<>();
+        forEachLambdaFunction("Plan", lambdaFunction -> {
+            ChangeSet.FunctionChange change = planChange(lambdaFunction);
+            changes.put(manifestKey(lambdaFunction), change);
+            getLog().info(lambdaFunction.getFunctionName() + ": " + change.getAction());
+            change.getTriggers().forEach(trigger ->
+                    getLog().info("    " + trigger.getAction() + " " + trigger.getIntegration() + " trigger " + trigger.getSource()));
+            change.getDeletions().forEach(deletion -> getLog().info("    DELETE " + deletion.getDescription()));
+            return lambdaFunction;
+        });
+
+        try {
+            ChangeSet plan = new ChangeSet(artifactDigest().getSha256());
+            lambdaFunctions.forEach(lambdaFunction ->
+                    plan.getFunctions().put(manifestKey(lambdaFunction), changes.get(manifestKey(lambdaFunction))));
+            plan.save(changeSet);
+            getLog().info("Wrote the changes to " + lambdaFunctions.size() + " function(s) to " + changeSet);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write change set " + changeSet + ": " + e.getMessage(), e);
+        }
+    }
+}
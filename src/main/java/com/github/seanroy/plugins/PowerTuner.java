@@ -0,0 +1,280 @@
+package com.github.seanroy.plugins;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.model.DeleteFunctionRequest;
+import com.amazonaws.services.lambda.model.GetFunctionConfigurationRequest;
+import com.amazonaws.services.lambda.model.GetFunctionConfigurationResult;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.LogType;
+import com.amazonaws.services.lambda.model.PublishVersionRequest;
+import com.amazonaws.services.lambda.model.UpdateFunctionCodeRequest;
+import com.amazonaws.services.lambda.model.UpdateFunctionConfigurationRequest;
+import com.github.seanroy.utils.Waiter;
+
+/**
+ * I benchmark a function at several memory sizes and architectures. For every combination I configure the function,
+ * publish a version, invoke the version and read the billed duration from the tail of its log. Each version gets one
+ * invocation to warm it up, which isn't measured, and is deleted when it has been measured. The memory size and
+ * architecture are changed on $LATEST, which unqualified invocations run, and are restored at the end.
+ *
+ * @author sean
+ */
+public class PowerTuner {
+    public static final String COST = "cost";
+    public static final String SPEED = "speed";
+    public static final String BALANCED = "balanced";
+
+    /*
+     * List prices in US East (N. Virginia), in USD.
+     */
+    private static final double X86_64_GB_SECOND = 0.0000166667;
+    private static final double ARM64_GB_SECOND = 0.0000133334;
+    private static final double REQUEST = 0.0000002;
+
+    private static final Pattern BILLED_DURATION = Pattern.compile("Billed Duration: (\\d+) ms");
+
+    /**
+     * I am the measurements of one memory size and architecture.
+     */
+    public static class Result {
+        private final String architecture;
+        private final int memorySize;
+        private final List<Long> billedDurations = new ArrayList<>();
+        private int errors;
+
+        Result(String architecture, int memorySize) {
+            this.architecture = architecture;
+            this.memorySize = memorySize;
+        }
+
+        public String getArchitecture() {
+            return architecture;
+        }
+
+        public int getMemorySize() {
+            return memorySize;
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the mean billed duration in milliseconds
+         */
+        public double getAverageDuration() {
+            return billedDurations.stream().mapToLong(Long::longValue).average().orElse(Double.NaN);
+        }
+
+        /**
+         * @return the longest billed duration in milliseconds
+         */
+        public long getMaxDuration() {
+            return billedDurations.stream().mapToLong(Long::longValue).max().orElse(0);
+        }
+
+        /**
+         * @return the mean price of an invocation in USD
+         */
+        public double getAverageCost() {
+            double gbSecond = "arm64".equals(architecture) ? ARM64_GB_SECOND : X86_64_GB_SECOND;
+            return getAverageDuration() / 1000 * memorySize / 1024 * gbSecond + REQUEST;
+        }
+
+        boolean isValid() {
+            return errors == 0 && !billedDurations.isEmpty();
+        }
+    }
+
+    private final AWSLambda lambdaClient;
+    private final Waiter waiter;
+    private final Log log;
+
+    /**
+     * @param lambdaClient the Lambda API, or a stand-in for it
+     * @param waiter waits for updates of the function to finish
+     * @param log where progress is written to
+     */
+    public PowerTuner(AWSLambda lambdaClient, Waiter waiter, Log log) {
+        this.lambdaClient = lambdaClient;
+        this.waiter = waiter;
+        this.log = log;
+    }
+
+    /**
+     * Benchmarks every combination of the architectures and memory sizes.
+     *
+     * @param functionName the function
+     * @param memorySizes memory sizes in MB
+     * @param architectures architectures, or none to keep the function's own
+     * @param code an update to the code the function runs, sent again to switch its architecture
+     * @param codeSha256 the base64 SHA-256 of that code
+     * @param invocations measured invocations per combination
+     * @param payload the event every invocation gets
+     * @return the measurements in the order they were taken
+     */
+    public List<Result> tune(String functionName, List<Integer> memorySizes, List<String> architectures,
+                             Supplier<UpdateFunctionCodeRequest> code, String codeSha256, int invocations, String payload) {
+        GetFunctionConfigurationResult original = ready(functionName, null, "GetFunctionConfiguration");
+        String originalArchitecture = architecture(original);
+        // Switching architectures replaces the code, which must be what the function already runs.
+        if (architectures.stream().anyMatch(architecture -> !architecture.equals(originalArchitecture))
+            && !original.getCodeSha256().equals(codeSha256)) {
+            throw new IllegalStateException(functionName + " runs different code than the deliverable, so its architecture"
+                                            + " can't be switched. Deploy the deliverable before tuning architectures.");
+        }
+        List<Result> results = new ArrayList<>();
+        String current = originalArchitecture;
+        try {
+            for (String architecture : architectures.isEmpty() ? Collections.singletonList(originalArchitecture) : architectures) {
+                if (!architecture.equals(current)) {
+                    current = architecture;
+                    switchArchitecture(functionName, architecture, code);
+                }
+                for (int memorySize : memorySizes) {
+                    results.add(measure(functionName, architecture, memorySize, invocations, payload));
+                }
+            }
+            return results;
+        } finally {
+            log.info("Restoring " + functionName + " to " + original.getMemorySize() + " MB on " + originalArchitecture);
+            lambdaClient.updateFunctionConfiguration(new UpdateFunctionConfigurationRequest()
+                    .withFunctionName(functionName)
+                    .withMemorySize(original.getMemorySize()));
+            ready(functionName, null, "UpdateFunctionConfiguration");
+            if (!current.equals(originalArchitecture)) {
+                switchArchitecture(functionName, originalArchitecture, code);
+            }
+        }
+    }
+
+    private Result measure(String functionName, String architecture, int memorySize, int invocations, String payload) {
+        Result result = new Result(architecture, memorySize);
+        lambdaClient.updateFunctionConfiguration(new UpdateFunctionConfigurationRequest()
+                .withFunctionName(functionName)
+                .withMemorySize(memorySize));
+        ready(functionName, null, "UpdateFunctionConfiguration");
+        String version = lambdaClient.publishVersion(new PublishVersionRequest()
+                .withFunctionName(functionName)
+                .withDescription("Power tuning " + memorySize + " MB " + architecture)).getVersion();
+        try {
+            ready(functionName, version, "PublishVersion");
+            invoke(functionName, version, payload);
+            for (int i = 0; i < invocations; i++) {
+                InvokeResult invocation = invoke(functionName, version, payload);
+                if (invocation.getFunctionError() != null) {
+                    result.errors++;
+                }
+                billedDuration(invocation).ifPresent(result.billedDurations::add);
+            }
+        } finally {
+            lambdaClient.deleteFunction(new DeleteFunctionRequest().withFunctionName(functionName).withQualifier(version));
+        }
+        log.info(String.format(Locale.ROOT, "%s %d MB on %s: %.1f ms, %d errors", functionName, memorySize, architecture,
+                               result.getAverageDuration(), result.getErrors()));
+        return result;
+    }
+
+    private InvokeResult invoke(String functionName, String version, String payload) {
+        return lambdaClient.invoke(new InvokeRequest()
+                .withFunctionName(functionName)
+                .withQualifier(version)
+                .withLogType(LogType.Tail)
+                .withPayload(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private void switchArchitecture(String functionName, String architecture, Supplier<UpdateFunctionCodeRequest> code) {
+        log.info("Switching " + functionName + " to " + architecture);
+        lambdaClient.updateFunctionCode(code.get()
+                .withFunctionName(functionName)
+                .withArchitectures(architecture)
+                .withPublish(false));
+        ready(functionName, null, "UpdateFunctionCode");
+    }
+
+    private GetFunctionConfigurationResult ready(String functionName, String qualifier, String operation) {
+        return waiter.await(operation + " for " + functionName + (qualifier == null ? "" : ":" + qualifier),
+            () -> lambdaClient.getFunctionConfiguration(new GetFunctionConfigurationRequest()
+                    .withFunctionName(functionName)
+                    .withQualifier(qualifier)),
+            AbstractLambdaMojo::isFunctionReady, AbstractLambdaMojo::functionFailure, AbstractLambdaMojo::functionStatus);
+    }
+
+    private static String architecture(GetFunctionConfigurationResult config) {
+        return config.getArchitectures() == null || config.getArchitectures().isEmpty() ? "x86_64" : config.getArchitectures().get(0);
+    }
+
+    /*
+     * The log tail ends with the REPORT line of the invocation, e.g.
+     * "REPORT RequestId: ... Duration: 102.25 ms Billed Duration: 103 ms Memory Size: 512 MB ..."
+     */
+    static Optional<Long> billedDuration(InvokeResult invocation) {
+        if (invocation.getLogResult() == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = BILLED_DURATION.matcher(new String(Base64.getDecoder().decode(invocation.getLogResult()), StandardCharsets.UTF_8));
+        return matcher.find() ? Optional.of(Long.parseLong(matcher.group(1))) : Optional.empty();
+    }
+
+    /**
+     * @param results the measurements of a function
+     * @param strategy cost for the cheapest, speed for the fastest or balanced for the best product of both
+     * @return the best combination which had no errors, or null if all had errors
+     */
+    public static Result recommend(List<Result> results, String strategy) {
+        Comparator<Result> order;
+        if (SPEED.equalsIgnoreCase(strategy)) {
+            order = Comparator.comparingDouble(Result::getAverageDuration);
+        } else if (BALANCED.equalsIgnoreCase(strategy)) {
+            order = Comparator.comparingDouble(result -> result.getAverageCost() * result.getAverageDuration());
+        } else if (COST.equalsIgnoreCase(strategy)) {
+            order = Comparator.comparingDouble(Result::getAverageCost);
+        } else {
+            throw new IllegalArgumentException("Unknown tuning strategy " + strategy + ". Use cost, speed or balanced");
+        }
+        // Ties go to the smaller memory size.
+        return results.stream()
+                      .filter(Result::isValid)
+                      .min(order.thenComparingInt(Result::getMemorySize))
+                      .orElse(null);
+    }
+
+    /**
+     * @param functionName the function
+     * @param results the measurements of the function
+     * @param recommended the recommended combination, or null
+     * @return a Markdown section with a table of the measurements and the recommendation
+     */
+    public static String report(String functionName, List<Result> results, Result recommended) {
+        StringBuilder report = new StringBuilder("## ").append(functionName).append("\n\n")
+                .append("| Architecture | Memory (MB) | Average billed duration (ms) | Max billed duration (ms) | Errors | Cost per 1M invocations (USD) |\n")
+                .append("|---|---:|---:|---:|---:|---:|\n");
+        results.forEach(result -> report.append(String.format(Locale.ROOT, "| %s | %d | %.1f | %d | %d | %.2f |\n",
+                result.getArchitecture(), result.getMemorySize(), result.getAverageDuration(), result.getMaxDuration(),
+                result.getErrors(), result.getAverageCost() * 1_000_000)));
+        report.append('\n');
+        if (recommended == null) {
+            report.append("No recommendation: every memory size had errors.\n");
+        } else {
+            report.append(String.format("Recommended: memorySize %d, architecture %s\n", recommended.getMemorySize(),
+                                        recommended.getArchitecture()));
+        }
+        return report.append('\n').toString();
+    }
+}
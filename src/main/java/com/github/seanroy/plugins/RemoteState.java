@@ -0,0 +1,212 @@
+package com.github.seanroy.plugins;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.amazonaws.auth.policy.Policy;
+import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.model.AliasConfiguration;
+import com.amazonaws.services.lambda.model.EventSourceMappingConfiguration;
+import com.amazonaws.services.lambda.model.FunctionConfiguration;
+import com.amazonaws.services.lambda.model.GetFunctionConcurrencyRequest;
+import com.amazonaws.services.lambda.model.GetFunctionRequest;
+import com.amazonaws.services.lambda.model.GetFunctionResult;
+import com.amazonaws.services.lambda.model.GetPolicyRequest;
+import com.amazonaws.services.lambda.model.ListAliasesRequest;
+import com.amazonaws.services.lambda.model.ListAliasesResult;
+import com.amazonaws.services.lambda.model.ListEventSourceMappingsRequest;
+import com.amazonaws.services.lambda.model.ListEventSourceMappingsResult;
+import com.amazonaws.services.lambda.model.ListFunctionsRequest;
+import com.amazonaws.services.lambda.model.ListFunctionsResult;
+import com.amazonaws.services.lambda.model.ListProvisionedConcurrencyConfigsRequest;
+import com.amazonaws.services.lambda.model.ListProvisionedConcurrencyConfigsResult;
+import com.amazonaws.services.lambda.model.ResourceNotFoundException;
+
+/**
+ * I am a snapshot of the remote state of the configured lambda functions, read once per build so that the mojos
+ * don't have to call AWS every time they need to know about a function.
+ *
+ * @author sean
+ */
+public class RemoteState {
+    private final AWSLambda lambdaClient;
+    private final Log log;
+    private final Map<String, FunctionState> functions = new ConcurrentHashMap<>();
+
+    public RemoteState(AWSLambda lambdaClient, Log log) {
+        this.lambdaClient = lambdaClient;
+        this.log = log;
+    }
+
+    /**
+     * Reads the configuration of every function. Unqualified functions are looked up with a single paginated scan
+     * of ListFunctions when there are at least listFunctionsThreshold of them, and with concurrent GetFunction
+     * requests otherwise.
+     *
+     * @param lambdaFunctions the configured functions
+     * @param listFunctionsThreshold number of functions from which ListFunctions is used
+     * @param concurrency maximum number of concurrent GetFunction requests
+     * @throws ExecutionException if a function could not be read
+     * @throws InterruptedException if interrupted while reading
+     */
+    public void load(List<LambdaFunction> lambdaFunctions, int listFunctionsThreshold, int concurrency)
+            throws ExecutionException, InterruptedException {
+        List<LambdaFunction> remaining = new ArrayList<>(lambdaFunctions);
+        List<LambdaFunction> unqualified = lambdaFunctions.stream().filter(f -> f.getQualifier() == null).collect(toList());
+
+        if (unqualified.size() >= listFunctionsThreshold) {
+            Set<String> names = new HashSet<>();
+            unqualified.forEach(f -> names.add(f.getFunctionName()));
+            String marker = null;
+            int pages = 0;
+            do {
+                ListFunctionsResult result = lambdaClient.listFunctions(new ListFunctionsRequest().withMarker(marker).withMaxItems(50));
+                result.getFunctions().stream()
+                      .filter(configuration -> names.contains(configuration.getFunctionName()))
+                      .forEach(configuration -> functions.put(configuration.getFunctionName(), present(configuration, null,
+                              () -> reservedConcurrency(configuration.getFunctionName()))));
+                marker = result.getNextMarker();
+                pages++;
+            } while (marker != null);
+            log.debug("Read " + pages + " page(s) of ListFunctions.");
+
+            unqualified.forEach(f -> functions.putIfAbsent(f.getFunctionName(), FunctionState.absent()));
+            remaining.removeAll(unqualified);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, Math.max(1, remaining.size()))));
+        try {
+            List<Future<FunctionState>> results = remaining.stream()
+                    .map(f -> executor.submit(() -> fetch(f.getFunctionName(), f.getQualifier())))
+                    .collect(toList());
+            for (int i = 0; i < results.size(); i++) {
+                functions.put(key(remaining.get(i)), results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param lambdaFunction a configured function
+     * @return the function's state, read on demand if it wasn't loaded up front
+     */
+    public FunctionState get(LambdaFunction lambdaFunction) {
+        return functions.computeIfAbsent(key(lambdaFunction), k -> fetch(lambdaFunction.getFunctionName(), lambdaFunction.getQualifier()));
+    }
+
+    /**
+     * Replaces the state of a function, e.g. with one read by an earlier build.
+     *
+     * @param lambdaFunction a configured function
+     * @param state the function's state
+     */
+    public void put(LambdaFunction lambdaFunction, FunctionState state) {
+        functions.put(key(lambdaFunction), state);
+    }
+
+    private String key(LambdaFunction lambdaFunction) {
+        return lambdaFunction.getQualifier() == null
+                ? lambdaFunction.getFunctionName()
+                : lambdaFunction.getFunctionName() + ":" + lambdaFunction.getQualifier();
+    }
+
+    private FunctionState fetch(String functionName, String qualifier) {
+        try {
+            GetFunctionResult result = lambdaClient.getFunction(new GetFunctionRequest()
+                    .withFunctionName(functionName)
+                    .withQualifier(qualifier));
+            // GetFunction returns the reserved concurrency too, ListFunctions doesn't.
+            Integer reserved = result.getConcurrency() == null ? null : result.getConcurrency().getReservedConcurrentExecutions();
+            return present(result.getConfiguration(), qualifier, () -> reserved);
+        } catch (ResourceNotFoundException ignored) {
+            log.debug("Lambda function " + functionName + " doesn't exist yet.");
+            return FunctionState.absent();
+        }
+    }
+
+    private FunctionState present(FunctionConfiguration configuration, String qualifier, Supplier<Integer> reservedConcurrency) {
+        String functionName = configuration.getFunctionName();
+        return new FunctionState(configuration,
+            () -> policy(functionName, qualifier),
+            () -> aliases(functionName),
+            () -> eventSourceMappings(functionName),
+            reservedConcurrency,
+            () -> provisionedConcurrency(functionName));
+    }
+
+    private Policy policy(String functionName, String qualifier) {
+        try {
+            return Policy.fromJson(lambdaClient.getPolicy(new GetPolicyRequest()
+                    .withFunctionName(functionName)
+                    .withQualifier(qualifier)).getPolicy());
+        } catch (ResourceNotFoundException ignored) {
+            log.debug("Lambda function " + functionName + " has no resource policy yet.");
+            return null;
+        }
+    }
+
+    private List<AliasConfiguration> aliases(String functionName) {
+        List<AliasConfiguration> aliases = new ArrayList<>();
+        String marker = null;
+        do {
+            ListAliasesResult result = lambdaClient.listAliases(new ListAliasesRequest()
+                    .withFunctionName(functionName)
+                    .withMarker(marker));
+            aliases.addAll(result.getAliases());
+            marker = result.getNextMarker();
+        } while (marker != null);
+        return aliases;
+    }
+
+    private Integer reservedConcurrency(String functionName) {
+        return lambdaClient.getFunctionConcurrency(new GetFunctionConcurrencyRequest()
+                .withFunctionName(functionName)).getReservedConcurrentExecutions();
+    }
+
+    /*
+     * Keyed by the qualifier the concurrency is provisioned for, which ends the ARN of each config.
+     */
+    private Map<String, Integer> provisionedConcurrency(String functionName) {
+        Map<String, Integer> provisioned = new HashMap<>();
+        String marker = null;
+        do {
+            ListProvisionedConcurrencyConfigsResult result = lambdaClient.listProvisionedConcurrencyConfigs(
+                    new ListProvisionedConcurrencyConfigsRequest()
+                            .withFunctionName(functionName)
+                            .withMarker(marker));
+            result.getProvisionedConcurrencyConfigs().forEach(config -> provisioned.put(
+                    config.getFunctionArn().substring(config.getFunctionArn().lastIndexOf(':') + 1),
+                    config.getRequestedProvisionedConcurrentExecutions()));
+            marker = result.getNextMarker();
+        } while (marker != null);
+        return provisioned;
+    }
+
+    private List<EventSourceMappingConfiguration> eventSourceMappings(String functionName) {
+        List<EventSourceMappingConfiguration> mappings = new ArrayList<>();
+        String marker = null;
+        do {
+            ListEventSourceMappingsResult result = lambdaClient.listEventSourceMappings(new ListEventSourceMappingsRequest()
+                    .withFunctionName(functionName)
+                    .withMarker(marker));
+            mappings.addAll(result.getEventSourceMappings());
+            marker = result.getNextMarker();
+        } while (marker != null);
+        return mappings;
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.seanroy.plugins;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sns.model.ListSubscriptionsByTopicRequest;
+import com.amazonaws.services.sns.model.ListSubscriptionsByTopicResult;
+import com.amazonaws.services.sns.model.ListSubscriptionsRequest;
+import com.amazonaws.services.sns.model.ListSubscriptionsResult;
+import com.amazonaws.services.sns.model.NotFoundException;
+import com.amazonaws.services.sns.model.Subscription;
+import com.github.seanroy.utils.Lazy;
+
+/**
+ * I am an index of SNS subscriptions by endpoint, shared by all functions of a build. The subscriptions of the
+ * whole account are listed at most once, the first time they are needed. When the candidate topics are known,
+ * only the subscriptions of those topics are listed instead.
+ *
+ * @author sean
+ */
+public class SNSSubscriptionIndex {
+    private final Supplier<AmazonSNS> snsClient;
+    private final Lazy<Map<String, List<Subscription>>> byEndpoint;
+    private final Map<String, List<Subscription>> byTopic = new ConcurrentHashMap<>();
+
+    public SNSSubscriptionIndex(Supplier<AmazonSNS> snsClient) {
+        this.snsClient = snsClient;
+        this.byEndpoint = new Lazy<>(this::scanAccount);
+    }
+
+    /**
+     * @param endpoint the endpoint, e.g. a lambda function ARN
+     * @return all subscriptions of the account delivering to the endpoint
+     */
+    public List<Subscription> forEndpoint(String endpoint) {
+        return byEndpoint.get().getOrDefault(endpoint, Collections.emptyList());
+    }
+
+    /**
+     * @param topicArns the topics to look at
+     * @param endpoint the endpoint, e.g. a lambda function ARN
+     * @return the subscriptions of the given topics delivering to the endpoint
+     */
+    public List<Subscription> forTopics(Collection<String> topicArns, String endpoint) {
+        return topicArns.stream()
+                        .distinct()
+                        .flatMap(topicArn -> byTopic.computeIfAbsent(topicArn, this::scanTopic).stream())
+                        .filter(subscription -> Objects.equals(endpoint, subscription.getEndpoint()))
+                        .collect(toList());
+    }
+
+    private Map<String, List<Subscription>> scanAccount() {
+        Map<String, List<Subscription>> index = new HashMap<>();
+        String nextToken = null;
+        do {
+            ListSubscriptionsResult result = snsClient.get().listSubscriptions(new ListSubscriptionsRequest().withNextToken(nextToken));
+            result.getSubscriptions().stream()
+                  .filter(subscription -> subscription.getEndpoint() != null)
+                  .forEach(subscription -> index.computeIfAbsent(subscription.getEndpoint(), e -> new ArrayList<>()).add(subscription));
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
+        return index;
+    }
+
+    private List<Subscription> scanTopic(String topicArn) {
+        List<Subscription> subscriptions = new ArrayList<>();
+        String nextToken = null;
+        try {
+            do {
+                ListSubscriptionsByTopicResult result = snsClient.get().listSubscriptionsByTopic(new ListSubscriptionsByTopicRequest()
+                        .withTopicArn(topicArn)
+                        .withNextToken(nextToken));
+                subscriptions.addAll(result.getSubscriptions());
+                nextToken = result.getNextToken();
+            } while (nextToken != null);
+        } catch (NotFoundException ignored) {
+            // The topic was deleted, so it has no subscriptions left.
+        }
+        return subscriptions;
+    }
+}
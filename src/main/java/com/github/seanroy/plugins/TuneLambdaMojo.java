@@ -0,0 +1,97 @@
+package com.github.seanroy.plugins;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Optional.ofNullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * I am a tune mojo responsible to benchmark deployed lambda functions at several memory sizes and architectures, and
+ * to recommend the memory size which suits each of them best.
+ *
+ * @author sean
+ */
+@Mojo(name = "tune", threadSafe = true)
+public class TuneLambdaMojo extends AbstractLambdaMojo {
+    private static final List<Integer> DEFAULT_MEMORY_SIZES = asList(128, 256, 512, 1024, 1536, 2048, 3008);
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if(checkSkip()) return;
+        if (isMultiRegion()) {
+            throw new MojoExecutionException("The tune goal works on a single region. Set region instead of regions.");
+        }
+        if (!tuneLatest) {
+            throw new MojoExecutionException("The tune goal changes the memory size and architecture of $LATEST, which "
+                                             + "unqualified invocations and triggers run. Set tuneLatest to true to tune anyway.");
+        }
+        if (!asList(PowerTuner.COST, PowerTuner.SPEED, PowerTuner.BALANCED).contains(tuneStrategy.toLowerCase(Locale.ROOT))) {
+            throw new MojoExecutionException("Unknown tuneStrategy " + tuneStrategy + ". Use cost, speed or balanced.");
+        }
+        super.execute();
+
+        List<Integer> memorySizes = ofNullable(tuneMemorySizes).filter(sizes -> !sizes.isEmpty()).orElse(DEFAULT_MEMORY_SIZES);
+        List<String> architectures = ofNullable(tuneArchitectures).orElse(emptyList());
+        String codeSha256 = null;
+        if (!architectures.isEmpty()) {
+            // Switching architectures takes a code update, which is made with the deliverable.
+            try {
+                codeSha256 = artifactDigest().getSha256();
+                uploadCode();
+            } catch (Exception e) {
+                getLog().error("Error during processing", e);
+                throw new MojoExecutionException(e.getMessage());
+            }
+        }
+
+        String deliverableSha256 = codeSha256;
+        Map<String, String> reports = new ConcurrentHashMap<>();
+        try {
+            forEachLambdaFunction("Tune", lambdaFunction -> {
+                if (!remoteState.get(lambdaFunction).exists()) {
+                    throw new IllegalStateException(lambdaFunction.getFunctionName() + " doesn't exist. Deploy it before tuning it.");
+                }
+                List<PowerTuner.Result> results = new PowerTuner(lambdaClient(), waiter(), getLog())
+                        .tune(lambdaFunction.getFunctionName(), memorySizes, architectures, this::functionCodeUpdate,
+                              deliverableSha256, tuneInvocations, tunePayload);
+                String report = PowerTuner.report(lambdaFunction.getFunctionName(), results, PowerTuner.recommend(results, tuneStrategy));
+                asList(report.split("\n")).forEach(getLog()::info);
+                reports.put(lambdaFunction.getFunctionName(), report);
+                return lambdaFunction;
+            });
+        } finally {
+            writeReport(reports);
+        }
+    }
+
+    private void writeReport(Map<String, String> reports) throws MojoExecutionException {
+        if (reports.isEmpty()) {
+            return;
+        }
+        String report = lambdaFunctions.stream()
+                                       .map(lambdaFunction -> reports.get(lambdaFunction.getFunctionName()))
+                                       .filter(Objects::nonNull)
+                                       .collect(Collectors.joining("", "# Power tuning\n\n", ""));
+        try {
+            if (tuneReport.getParentFile() != null) {
+                tuneReport.getParentFile().mkdirs();
+            }
+            Files.write(tuneReport.toPath(), report.getBytes(StandardCharsets.UTF_8));
+            getLog().info("Wrote the measurements of " + reports.size() + " function(s) to " + tuneReport);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write tune report " + tuneReport + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,10 +1,9 @@
 package com.github.seanroy.plugins;
 
-import com.amazonaws.services.lambda.model.GetFunctionRequest;
-import com.amazonaws.services.lambda.model.ResourceNotFoundException;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -12,33 +11,58 @@ import java.util.function.Function;
  *
  * @author Joseph Wortmann, <a href="mailto:joseph.wortmann@gmail.com">Joseph Wortmann</a> 2/1/2018.
  */
-@Mojo(name = "update-lambda-code")
+@Mojo(name = "update-lambda-code", threadSafe = true)
 public class UpdateLambdaCodeMojo extends AbstractLambdaMojo {
 
     @Override
     public void execute() throws MojoExecutionException {
         if(checkSkip()) return;
+        if (isMultiRegion()) {
+            forEachRegion();
+            return;
+        }
         super.execute();
         try {
-            uploadJarToS3();
-            lambdaFunctions.stream().map(f -> {
-                getLog().info("---- Update function code " + f.getFunctionName() + " -----");
-                return f;
-            }).forEach(lf -> updateFunctionCodeIfExists.apply(lf));
+            uploadCode();
+            publishDependencyLayer();
         } catch (Exception e) {
             getLog().error("Error during processing", e);
             throw new MojoExecutionException(e.getMessage());
         }
+        if (isAsyncEngine()) {
+            forEachLambdaFunctionAsync("Update function code", updateFunctionCodeIfExistsAsync);
+        } else {
+            forEachLambdaFunction("Update function code", updateFunctionCodeIfExists);
+        }
     }
 
     private Function<LambdaFunction, LambdaFunction> updateFunctionCodeIfExists = (LambdaFunction lambdaFunction) -> {
-        try {
-            lambdaFunction.setFunctionArn(lambdaClient.getFunction(
-                    new GetFunctionRequest().withFunctionName(lambdaFunction.getFunctionName())).getConfiguration().getFunctionArn());
+        FunctionState state = remoteState.get(lambdaFunction);
+        if (state.exists()) {
+            lambdaFunction.setFunctionArn(state.getConfiguration().getFunctionArn());
+            if (!isDependencyLayerAttached(lambdaFunction)) {
+                sendDependencyLayer.andThen(awaitFunction("UpdateFunctionConfiguration")).apply(lambdaFunction);
+            }
             updateFunctionCode.apply(lambdaFunction);
-        } catch (ResourceNotFoundException e) {
-            getLog().info("Lambda function not found", e);
+        } else {
+            getLog().info("Lambda function not found");
         }
         return lambdaFunction;
     };
+
+    private Function<LambdaFunction, CompletableFuture<LambdaFunction>> updateFunctionCodeIfExistsAsync = (LambdaFunction lambdaFunction) -> {
+        FunctionState state = remoteState.get(lambdaFunction);
+        if (!state.exists()) {
+            return async(lambdaFunction, lf -> {
+                getLog().info("Lambda function not found");
+                return lf;
+            });
+        }
+        lambdaFunction.setFunctionArn(state.getConfiguration().getFunctionArn());
+        // The code no longer carries its dependencies, so the function gets their layer first.
+        CompletableFuture<LambdaFunction> layered = isDependencyLayerAttached(lambdaFunction)
+                ? CompletableFuture.completedFuture(lambdaFunction)
+                : async(lambdaFunction, sendDependencyLayer).thenCompose(awaitFunctionAsync("UpdateFunctionConfiguration"));
+        return layered.thenCompose(lf -> async(lf, sendFunctionCode)).thenCompose(awaitFunctionAsync("UpdateFunctionCode"));
+    };
 }
@@ -0,0 +1,50 @@
+package com.github.seanroy.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * I hold the AWS clients built during a maven session, so that every module of a reactor build, and every thread of
+ * a parallel build, reuses the same clients and connection pools instead of building its own. Clients are keyed on
+ * everything that went into building them: service, region, credentials and client configuration. They live as
+ * long as the JVM does.
+ *
+ * @author sean
+ */
+public class AWSClientRegistry {
+    private static final Map<String, Object> clients = new ConcurrentHashMap<>();
+    private static volatile AdaptiveConcurrencyHandler concurrencyHandler;
+
+    private AWSClientRegistry() {
+    }
+
+    /**
+     * @param key identifies the service, region, credentials and client configuration of the client
+     * @param factory builds the client if there is none for the key yet
+     * @param <T> type of the client
+     * @return the client for the key
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T client(String key, Supplier<T> factory) {
+        return (T) clients.computeIfAbsent(key, k -> factory.get());
+    }
+
+    /**
+     * Returns the handler which bounds the concurrent calls of all clients in the JVM. The first caller's settings
+     * win.
+     *
+     * @param factory builds the handler if there is none yet
+     * @return the shared handler
+     */
+    public static AdaptiveConcurrencyHandler concurrencyHandler(Supplier<AdaptiveConcurrencyHandler> factory) {
+        if (concurrencyHandler == null) {
+            synchronized (AWSClientRegistry.class) {
+                if (concurrencyHandler == null) {
+                    concurrencyHandler = factory.get();
+                }
+            }
+        }
+        return concurrencyHandler;
+    }
+}
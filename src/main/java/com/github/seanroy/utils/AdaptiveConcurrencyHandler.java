@@ -0,0 +1,107 @@
+package com.github.seanroy.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.SdkBaseException;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
+import com.amazonaws.handlers.HandlerBeforeAttemptContext;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+
+/**
+ * I am attached to every AWS client and hold each attempt of a request until the {@link AdaptiveLimiter} of its
+ * service admits it. Throttled attempts shrink the service's limit, successful ones grow it, and the SDK's own
+ * retries go through the limiter like any other attempt. Invocations of functions aren't held, as they are limited by
+ * the concurrency of the function rather than by the rate of the API.
+ *
+ * @author sean
+ */
+public class AdaptiveConcurrencyHandler extends RequestHandler2 {
+    private static final HandlerContextKey<AdaptiveLimiter> PERMIT = new HandlerContextKey<>("AdaptiveLimiterPermit");
+
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+    private final Supplier<Log> log;
+    private final int initialLimit;
+    private final int maxLimit;
+
+    public AdaptiveConcurrencyHandler(Supplier<Log> log, int initialLimit, int maxLimit) {
+        this.log = log;
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    @Override
+    public void beforeAttempt(HandlerBeforeAttemptContext context) {
+        Request<?> request = context.getRequest();
+        if (request.getOriginalRequest() instanceof InvokeRequest) {
+            return;
+        }
+        // Each region of a service has limits of its own.
+        String service = request.getServiceName() + " " + request.getEndpoint().getHost();
+        AdaptiveLimiter limiter = limiters.computeIfAbsent(service, name -> new AdaptiveLimiter(name, initialLimit, maxLimit));
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException(e);
+        }
+        request.addHandlerContext(PERMIT, limiter);
+    }
+
+    @Override
+    public void afterAttempt(HandlerAfterAttemptContext context) {
+        Exception exception = context.getException();
+        release(context.getRequest(), exception instanceof SdkBaseException
+                                      && RetryUtils.isThrottlingException((SdkBaseException) exception));
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        release(request, false);
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception e) {
+        release(request, false);
+    }
+
+    /**
+     * Releases the permit of the request's last attempt, unless it was released already.
+     */
+    private void release(Request<?> request, boolean throttled) {
+        AdaptiveLimiter limiter = request.getHandlerContext(PERMIT);
+        if (limiter == null) {
+            return;
+        }
+        request.addHandlerContext(PERMIT, null);
+        if (limiter.release(throttled)) {
+            String message = String.format("%s concurrency limit is now %d", limiter.getName(), limiter.getLimit());
+            if (throttled) {
+                log.get().info(message + " after being throttled");
+            } else {
+                log.get().debug(message);
+            }
+        }
+    }
+
+    /**
+     * @return the current limit of every service called so far, e.g.
+     *         "AWSLambda lambda.us-east-1.amazonaws.com=12, Amazon S3 s3.amazonaws.com=4"
+     */
+    public String describeLimits() {
+        StringBuilder limits = new StringBuilder();
+        new TreeMap<>(limiters).forEach((name, limiter) ->
+                limits.append(limits.length() > 0 ? ", " : "").append(name).append('=').append(limiter.getLimit()));
+        return limits.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.seanroy.utils;
+
+/**
+ * I bound the number of concurrent calls to a service. The bound grows additively, by about one for every bound's
+ * worth of calls that succeed, and is halved whenever a call is throttled, so it settles just below the rate the
+ * service allows.
+ *
+ * @author sean
+ */
+public class AdaptiveLimiter {
+    private final String name;
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveLimiter(String name, int initialLimit, int maxLimit) {
+        this.name = name;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.max(1, Math.min(initialLimit, this.maxLimit));
+    }
+
+    /**
+     * Waits until fewer than the current limit of calls are in flight.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= getLimit()) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Ends a call started with {@link #acquire()} and adjusts the limit.
+     *
+     * @param throttled whether the service throttled the call
+     * @return true if the limit changed to another whole number of calls
+     */
+    public synchronized boolean release(boolean throttled) {
+        int before = getLimit();
+        inFlight = Math.max(0, inFlight - 1);
+        if (throttled) {
+            limit = Math.max(1, limit / 2);
+        } else {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        notifyAll();
+        return getLimit() != before;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
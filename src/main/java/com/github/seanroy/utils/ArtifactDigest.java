@@ -0,0 +1,183 @@
+package com.github.seanroy.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * I hold the digests of a deliverable: the MD5 S3 reports for single part uploads, the SHA-256 Lambda reports as
+ * CodeSha256 and the MD5 of every part of a multipart upload. All of them are computed in a single pass over the
+ * file and cached, in memory and in a sidecar file next to the deliverable, keyed on the file's path, size and
+ * modification time.
+ *
+ * @author sean
+ */
+public class ArtifactDigest {
+    public static final String SIDECAR_SUFFIX = ".digests";
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final Map<String, ArtifactDigest> cache = new ConcurrentHashMap<>();
+
+    private String path;
+    private long size;
+    private long lastModified;
+    private long partSize;
+    private String md5;
+    private String sha256;
+    private List<String> partMD5s;
+
+    public ArtifactDigest() {
+    }
+
+    /**
+     * Returns the digests of the file, hashing it only if neither the in-memory cache nor the sidecar file hold
+     * digests for the same path, size, modification time and part size.
+     *
+     * @param file the deliverable
+     * @param partSize part size in bytes used for multipart uploads
+     * @return the digests of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static ArtifactDigest of(File file, long partSize) throws IOException {
+        String path = file.getCanonicalPath();
+        ArtifactDigest cached = cache.get(path);
+        if (cached == null || !cached.matches(file, partSize)) {
+            File sidecar = new File(path + SIDECAR_SUFFIX);
+            cached = readSidecar(sidecar);
+            if (cached == null || !cached.matches(file, partSize)) {
+                cached = compute(file, partSize);
+                writeSidecar(sidecar, cached);
+            }
+            cache.put(path, cached);
+        }
+        return cached;
+    }
+
+    private static ArtifactDigest compute(File file, long partSize) throws IOException {
+        ArtifactDigest digest = new ArtifactDigest();
+        digest.path = file.getCanonicalPath();
+        digest.size = file.length();
+        digest.lastModified = file.lastModified();
+        digest.partSize = partSize;
+        digest.partMD5s = new ArrayList<>();
+
+        MessageDigest md5 = DigestUtils.getMd5Digest();
+        MessageDigest sha256 = DigestUtils.getSha256Digest();
+        MessageDigest part = DigestUtils.getMd5Digest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long partRemaining = partSize;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer.limit((int) Math.min(BUFFER_SIZE, partRemaining));
+            while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                buffer.flip();
+                md5.update(buffer.duplicate());
+                sha256.update(buffer.duplicate());
+                partRemaining -= buffer.remaining();
+                part.update(buffer);
+                if (partRemaining == 0) {
+                    digest.partMD5s.add(Hex.encodeHexString(part.digest()));
+                    partRemaining = partSize;
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, partRemaining));
+            }
+        }
+        if (partRemaining != partSize || digest.partMD5s.isEmpty()) {
+            digest.partMD5s.add(Hex.encodeHexString(part.digest()));
+        }
+
+        digest.md5 = Hex.encodeHexString(md5.digest());
+        digest.sha256 = Base64.getEncoder().encodeToString(sha256.digest());
+        return digest;
+    }
+
+    private static ArtifactDigest readSidecar(File sidecar) {
+        if (!sidecar.isFile()) {
+            return null;
+        }
+        try {
+            return JsonUtil.mapper.readValue(sidecar, ArtifactDigest.class);
+        } catch (IOException ignored) {
+            // A corrupt or outdated sidecar is simply recomputed.
+            return null;
+        }
+    }
+
+    private static void writeSidecar(File sidecar, ArtifactDigest digest) {
+        try {
+            JsonUtil.mapper.writeValue(sidecar, digest);
+        } catch (IOException ignored) {
+            // The sidecar is an optimization only, e.g. the deliverable may live in a read only location.
+        }
+    }
+
+    private boolean matches(File file, long partSize) throws IOException {
+        return this.size == file.length() && this.lastModified == file.lastModified() && this.partSize == partSize
+                && file.getCanonicalPath().equals(this.path);
+    }
+
+    /**
+     * @return the ETag S3 assigns to a multipart upload of the file, i.e. the MD5 of the concatenated binary MD5s of
+     * each part, followed by a dash and the number of parts.
+     */
+    public String getMultipartETag() {
+        MessageDigest composite = DigestUtils.getMd5Digest();
+        partMD5s.forEach(partMD5 -> {
+            try {
+                composite.update(Hex.decodeHex(partMD5.toCharArray()));
+            } catch (Exception e) {
+                throw new IllegalStateException("Invalid part digest " + partMD5, e);
+            }
+        });
+        return Hex.encodeHexString(composite.digest()) + "-" + partMD5s.size();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * @return hex encoded MD5 of the whole file
+     */
+    public String getMd5() {
+        return md5;
+    }
+
+    /**
+     * @return base64 encoded SHA-256 of the whole file, comparable to Lambda's CodeSha256
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * @return hex encoded MD5 of each part of a multipart upload
+     */
+    public List<String> getPartMD5s() {
+        return partMD5s;
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.seanroy.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * I write a copy of a deployment zip or jar without the entries a lambda function doesn't need at runtime: jar
+ * signatures, which are invalid in a shaded jar anyway, Maven metadata, license files in META-INF or at the root
+ * repeating an earlier one word for word, native libraries for Windows and macOS, and test resources. Entries can be excluded or kept regardless
+ * with globs such as <code>**&#47;*.md</code>, in which <code>*</code> matches within a directory and
+ * <code>**</code> across directories. Includes win over excludes and the built-in rules.
+ *
+ * @author sean
+ */
+public class ArtifactSlimmer {
+    public static final String EXCLUDED = "excluded by configuration";
+    public static final String SIGNATURES = "jar signatures";
+    public static final String MAVEN_METADATA = "Maven metadata";
+    public static final String DUPLICATE_LICENSES = "duplicate licenses";
+    public static final String OTHER_PLATFORMS = "native libraries for other platforms";
+    public static final String TEST_RESOURCES = "test resources";
+
+    private static final Pattern SIGNATURE = Pattern.compile("META-INF/[^/]+\\.(SF|DSA|RSA|EC)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LICENSE = Pattern.compile("(META-INF/(.*/)?)?(LICENSE|NOTICE|COPYING)[^/]*|META-INF/licenses/.*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern OTHER_PLATFORM = Pattern.compile(
+            ".*\\.(dll|dylib|jnilib)|(.*/)?(win|windows|win32|win64|osx|mac|macos|darwin)[-_/].*\\.(so|a)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TEST_RESOURCE = Pattern.compile("(.*/)?(test-classes|src/test)/.*");
+
+    private final List<Pattern> includes;
+    private final List<Pattern> excludes;
+
+    /**
+     * @param includes globs of entries to keep in any case
+     * @param excludes globs of entries to drop
+     */
+    public ArtifactSlimmer(List<String> includes, List<String> excludes) {
+        this.includes = globs(includes);
+        this.excludes = globs(excludes);
+    }
+
+    /**
+     * Writes the entries of the source worth keeping to the target.
+     *
+     * @param source the deployment zip or jar
+     * @param target the slimmed copy, overwritten if it exists
+     * @return the compressed bytes dropped per reason, in the order the reasons were first met
+     * @throws IOException if the source can't be read or the target can't be written
+     */
+    public Map<String, Long> slim(File source, File target) throws IOException {
+        Map<String, Long> saved = new LinkedHashMap<>();
+        Set<String> licenses = new HashSet<>();
+        if (target.getParentFile() != null) {
+            target.getParentFile().mkdirs();
+        }
+        try (ZipFile zip = new ZipFile(source);
+             ZipOutputStream out = new ZipOutputStream(new FileOutputStream(target))) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                byte[] content = entry.isDirectory() ? new byte[0] : read(zip.getInputStream(entry));
+                String reason = reason(entry.getName(), content, licenses);
+                if (reason != null) {
+                    saved.merge(reason, Math.max(0, entry.getCompressedSize()), Long::sum);
+                    continue;
+                }
+                ZipEntry copy = new ZipEntry(entry.getName());
+                copy.setTime(entry.getTime());
+                out.putNextEntry(copy);
+                out.write(content);
+                out.closeEntry();
+            }
+        }
+        return saved;
+    }
+
+    /*
+     * Why the entry is dropped, or null if it is kept.
+     */
+    private String reason(String name, byte[] content, Set<String> licenses) {
+        if (matches(includes, name)) {
+            return null;
+        }
+        if (matches(excludes, name)) {
+            return EXCLUDED;
+        }
+        if (SIGNATURE.matcher(name).matches()) {
+            return SIGNATURES;
+        }
+        if (name.startsWith("META-INF/maven/")) {
+            return MAVEN_METADATA;
+        }
+        if (!name.endsWith("/") && LICENSE.matcher(name).matches() && !licenses.add(DigestUtils.sha256Hex(content))) {
+            return DUPLICATE_LICENSES;
+        }
+        if (OTHER_PLATFORM.matcher(name).matches()) {
+            return OTHER_PLATFORMS;
+        }
+        if (TEST_RESOURCE.matcher(name).matches()) {
+            return TEST_RESOURCES;
+        }
+        return null;
+    }
+
+    private static boolean matches(List<Pattern> patterns, String name) {
+        return patterns.stream().anyMatch(pattern -> pattern.matcher(name).matches());
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            copy(input, bytes);
+            return bytes.toByteArray();
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static List<Pattern> globs(List<String> globs) {
+        return (globs == null ? Collections.<String>emptyList() : globs).stream()
+                .map(ArtifactSlimmer::glob)
+                .collect(Collectors.toList());
+    }
+
+    static Pattern glob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        String g = glob.trim();
+        for (int i = 0; i < g.length(); i++) {
+            char c = g.charAt(i);
+            if (c == '*' && g.startsWith("**/", i)) {
+                regex.append("(.*/)?");
+                i += 2;
+            } else if (c == '*' && g.startsWith("**", i)) {
+                regex.append(".*");
+                i++;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * @param bytes a number of bytes
+     * @return the number in a unit which is easy to read, e.g. 2.4 MB
+     */
+    public static String format(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        int unit = (int) (Math.log(bytes) / Math.log(1024));
+        return String.format(Locale.ROOT, "%.1f %sB", bytes / Math.pow(1024, unit), "KMGT".charAt(unit - 1));
+    }
+}
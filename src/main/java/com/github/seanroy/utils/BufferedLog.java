@@ -0,0 +1,134 @@
+package com.github.seanroy.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A maven {@link Log} that holds on to everything written to it until it is flushed. This allows output produced
+ * concurrently on behalf of several lambda functions to be written to the build log one function at a time.
+ *
+ * @author sean
+ */
+public class BufferedLog implements Log {
+    private enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static class Entry {
+        private final Level level;
+        private final CharSequence content;
+        private final Throwable error;
+
+        private Entry(Level level, CharSequence content, Throwable error) {
+            this.level = level;
+            this.content = content;
+            this.error = error;
+        }
+    }
+
+    private final Log target;
+    private final List<Entry> entries = new ArrayList<>();
+
+    public BufferedLog(Log target) {
+        this.target = target;
+    }
+
+    /**
+     * Writes all buffered entries to the target log, in the order they were logged, and empties the buffer.
+     */
+    public synchronized void flush() {
+        entries.forEach(entry -> {
+            switch (entry.level) {
+                case DEBUG: target.debug(entry.content, entry.error); break;
+                case INFO:  target.info(entry.content, entry.error);  break;
+                case WARN:  target.warn(entry.content, entry.error);  break;
+                default:    target.error(entry.content, entry.error); break;
+            }
+        });
+        entries.clear();
+    }
+
+    private synchronized void add(Level level, CharSequence content, Throwable error) {
+        entries.add(new Entry(level, content, error));
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return target.isDebugEnabled();
+    }
+
+    @Override
+    public void debug(CharSequence content) {
+        add(Level.DEBUG, content, null);
+    }
+
+    @Override
+    public void debug(CharSequence content, Throwable error) {
+        add(Level.DEBUG, content, error);
+    }
+
+    @Override
+    public void debug(Throwable error) {
+        add(Level.DEBUG, null, error);
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return target.isInfoEnabled();
+    }
+
+    @Override
+    public void info(CharSequence content) {
+        add(Level.INFO, content, null);
+    }
+
+    @Override
+    public void info(CharSequence content, Throwable error) {
+        add(Level.INFO, content, error);
+    }
+
+    @Override
+    public void info(Throwable error) {
+        add(Level.INFO, null, error);
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return target.isWarnEnabled();
+    }
+
+    @Override
+    public void warn(CharSequence content) {
+        add(Level.WARN, content, null);
+    }
+
+    @Override
+    public void warn(CharSequence content, Throwable error) {
+        add(Level.WARN, content, error);
+    }
+
+    @Override
+    public void warn(Throwable error) {
+        add(Level.WARN, null, error);
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return target.isErrorEnabled();
+    }
+
+    @Override
+    public void error(CharSequence content) {
+        add(Level.ERROR, content, null);
+    }
+
+    @Override
+    public void error(CharSequence content, Throwable error) {
+        add(Level.ERROR, content, error);
+    }
+
+    @Override
+    public void error(Throwable error) {
+        add(Level.ERROR, null, error);
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.seanroy.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * I split a shaded deployment jar in two: the entries compiled from the project, which are found in its classes
+ * directory, go into a function zip, and everything else goes into a lambda layer zip, as a single jar under
+ * <code>java/lib</code> where the Java runtimes put it on the classpath. The dependencies are hashed by the names,
+ * CRCs and sizes of their entries, so the hash only changes when the dependencies do, however often the jar is
+ * rebuilt.
+ *
+ * @author sean
+ */
+public class DependencySplitter {
+    private static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+    private final File classesDirectory;
+
+    /**
+     * @param classesDirectory the directory the project's classes and resources were built to
+     */
+    public DependencySplitter(File classesDirectory) {
+        this.classesDirectory = classesDirectory;
+    }
+
+    /**
+     * I am the outcome of a split.
+     */
+    public static class Split {
+        private final String dependenciesSha256;
+        private final int functionEntries;
+        private final int dependencyEntries;
+
+        Split(String dependenciesSha256, int functionEntries, int dependencyEntries) {
+            this.dependenciesSha256 = dependenciesSha256;
+            this.functionEntries = functionEntries;
+            this.dependencyEntries = dependencyEntries;
+        }
+
+        /**
+         * @return the hash of the dependency entries, or null if there were none
+         */
+        public String getDependenciesSha256() {
+            return dependenciesSha256;
+        }
+
+        public int getFunctionEntries() {
+            return functionEntries;
+        }
+
+        public int getDependencyEntries() {
+            return dependencyEntries;
+        }
+    }
+
+    /**
+     * Writes the project's entries of the source to the function zip and the others to the layer zip.
+     *
+     * @param source the shaded deployment jar
+     * @param functionZip the zip of the project's entries, overwritten if it exists
+     * @param layerZip the layer zip of the dependencies, overwritten if it exists
+     * @return the hash of the dependencies and the number of entries on either side
+     * @throws IOException if the source can't be read or a target can't be written
+     */
+    public Split split(File source, File functionZip, File layerZip) throws IOException {
+        mkdirs(functionZip);
+        mkdirs(layerZip);
+        File dependenciesJar = File.createTempFile("dependencies", ".jar", layerZip.getAbsoluteFile().getParentFile());
+        int functionEntries = 0;
+        try (ZipFile zip = new ZipFile(source)) {
+            List<ZipEntry> entries = Collections.list(zip.entries()).stream()
+                                                .filter(entry -> !entry.isDirectory())
+                                                .sorted((e0, e1) -> e0.getName().compareTo(e1.getName()))
+                                                .collect(Collectors.toList());
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            int dependencyEntries = 0;
+            try (ZipOutputStream function = new ZipOutputStream(new FileOutputStream(functionZip));
+                 ZipOutputStream dependencies = new ZipOutputStream(new FileOutputStream(dependenciesJar))) {
+                for (ZipEntry entry : entries) {
+                    if (isProjectEntry(entry.getName())) {
+                        copy(zip, entry, function);
+                        functionEntries++;
+                    } else {
+                        copy(zip, entry, dependencies);
+                        digest.update(String.format("%s\0%d\0%d\n", entry.getName(), entry.getCrc(), entry.getSize())
+                                            .getBytes(StandardCharsets.UTF_8));
+                        dependencyEntries++;
+                    }
+                }
+            }
+            if (dependencyEntries == 0) {
+                return new Split(null, functionEntries, 0);
+            }
+            try (ZipOutputStream layer = new ZipOutputStream(new FileOutputStream(layerZip))) {
+                layer.putNextEntry(new ZipEntry("java/lib/" + layerJarName(source)));
+                Files.copy(dependenciesJar.toPath(), layer);
+                layer.closeEntry();
+            }
+            return new Split(Hex.encodeHexString(digest.digest()), functionEntries, dependencyEntries);
+        } finally {
+            Files.deleteIfExists(dependenciesJar.toPath());
+        }
+    }
+
+    /*
+     * The manifest stays with the function, whose jar it describes.
+     */
+    private boolean isProjectEntry(String name) {
+        return MANIFEST.equals(name) || new File(classesDirectory, name).isFile();
+    }
+
+    private static String layerJarName(File source) {
+        String name = source.getName();
+        int extension = name.lastIndexOf('.');
+        return (extension < 0 ? name : name.substring(0, extension)) + "-dependencies.jar";
+    }
+
+    private static void copy(ZipFile zip, ZipEntry entry, ZipOutputStream out) throws IOException {
+        ZipEntry copy = new ZipEntry(entry.getName());
+        copy.setTime(entry.getTime());
+        out.putNextEntry(copy);
+        try (InputStream in = zip.getInputStream(entry)) {
+            copy(in, out);
+        }
+        out.closeEntry();
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static void mkdirs(File file) {
+        if (file.getAbsoluteFile().getParentFile() != null) {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+        }
+    }
+}
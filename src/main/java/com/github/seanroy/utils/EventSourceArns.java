@@ -0,0 +1,47 @@
+package com.github.seanroy.utils;
+
+/**
+ * Helpers for reading the name of a stream, table or queue from the ARN of an event source, so that it doesn't have
+ * to be looked up with the service the event source belongs to.
+ *
+ * @author sean
+ */
+public class EventSourceArns {
+    private EventSourceArns() {
+    }
+
+    /**
+     * @param arn ARN of a kinesis stream, e.g. arn:aws:kinesis:us-east-1:123456789012:stream/my-stream
+     * @return the name of the stream
+     */
+    public static String kinesisStreamName(String arn) {
+        return segmentAfter(arn, ":stream/");
+    }
+
+    /**
+     * @param arn ARN of a dynamodb stream, e.g.
+     *            arn:aws:dynamodb:us-east-1:123456789012:table/my-table/stream/2017-01-01T00:00:00.000
+     * @return the name of the table the stream belongs to
+     */
+    public static String dynamoDBTableName(String arn) {
+        return segmentAfter(arn, ":table/");
+    }
+
+    /**
+     * @param arn ARN of an SQS queue, e.g. arn:aws:sqs:us-east-1:123456789012:my-queue
+     * @return the name of the queue
+     */
+    public static String sqsQueueName(String arn) {
+        return arn.substring(arn.lastIndexOf(':') + 1);
+    }
+
+    private static String segmentAfter(String arn, String prefix) {
+        int start = arn.indexOf(prefix);
+        if (start < 0) {
+            throw new IllegalArgumentException("Unexpected event source ARN " + arn);
+        }
+        start += prefix.length();
+        int end = arn.indexOf('/', start);
+        return end < 0 ? arn.substring(start) : arn.substring(start, end);
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.seanroy.utils;
+
+import java.util.function.Supplier;
+
+/**
+ * A thread safe supplier which computes its value on first use and returns the same value from then on.
+ *
+ * @author sean
+ */
+public class Lazy<T> implements Supplier<T> {
+    private volatile Supplier<T> supplier;
+    private volatile T value;
+
+    public Lazy(Supplier<T> supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    public T get() {
+        if (supplier != null) {
+            synchronized (this) {
+                if (supplier != null) {
+                    value = supplier.get();
+                    supplier = null;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return whether the value has been computed
+     */
+    public boolean isInitialized() {
+        return supplier == null;
+    }
+}
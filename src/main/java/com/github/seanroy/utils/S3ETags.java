@@ -0,0 +1,44 @@
+package com.github.seanroy.utils;
+
+/**
+ * Helpers for comparing local files with the ETags S3 reports for uploaded objects.
+ *
+ * @author sean
+ */
+public class S3ETags {
+    /**
+     * S3 never splits an upload into more parts than this.
+     */
+    public static final int MAXIMUM_UPLOAD_PARTS = 10000;
+
+    private S3ETags() {
+    }
+
+    /**
+     * @param eTag an S3 ETag
+     * @return the number of parts of a multipart upload ETag ("md5-of-md5s-N"), or -1 for a plain MD5 ETag.
+     */
+    public static int partCount(String eTag) {
+        int dash = eTag == null ? -1 : eTag.lastIndexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(eTag.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Computes the part size S3 TransferManager uses for a file, which is the requested minimum unless the file is
+     * too large to be uploaded in {@link #MAXIMUM_UPLOAD_PARTS} parts of that size.
+     *
+     * @param contentLength length of the file in bytes
+     * @param minimumPartSize requested part size in bytes
+     * @return the part size in bytes
+     */
+    public static long partSize(long contentLength, long minimumPartSize) {
+        return Math.max((long) Math.ceil((double) contentLength / MAXIMUM_UPLOAD_PARTS), minimumPartSize);
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.seanroy.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * I am a set of steps and the dependencies between them. Running me starts each step as soon as every step it depends
+ * on has finished, so steps which don't depend on each other run concurrently. When a step fails, the steps which
+ * depend on it are not run, and the run fails once all other steps are done.
+ *
+ * @param <T> type of the subject the steps work on
+ * @author sean
+ */
+public class StepGraph<T> {
+    private final Map<String, Function<T, CompletableFuture<T>>> steps = new LinkedHashMap<>();
+    private final Map<String, List<String>> dependencies = new HashMap<>();
+
+    /**
+     * @param name unique name of the step
+     * @param step starts the step and returns its completion
+     * @param dependsOn names of steps added earlier which must finish before the step starts
+     * @return this graph
+     */
+    public StepGraph<T> add(String name, Function<T, CompletableFuture<T>> step, String... dependsOn) {
+        if (steps.containsKey(name)) {
+            throw new IllegalArgumentException("Step " + name + " was added twice");
+        }
+        for (String dependency : dependsOn) {
+            if (!steps.containsKey(dependency)) {
+                throw new IllegalArgumentException("Step " + name + " depends on " + dependency + ", which wasn't added before it");
+            }
+        }
+        steps.put(name, step);
+        dependencies.put(name, Arrays.asList(dependsOn));
+        return this;
+    }
+
+    /**
+     * @param subject what the steps work on
+     * @return completes with the subject once all steps are done
+     */
+    public CompletableFuture<T> run(T subject) {
+        Map<String, CompletableFuture<T>> started = new LinkedHashMap<>();
+        steps.forEach((name, step) -> {
+            CompletableFuture<?>[] prerequisites = dependencies.get(name).stream()
+                                                               .map(started::get)
+                                                               .toArray(CompletableFuture[]::new);
+            started.put(name, CompletableFuture.allOf(prerequisites).thenCompose(done -> step.apply(subject)));
+        });
+        return CompletableFuture.allOf(started.values().toArray(new CompletableFuture[0])).thenApply(done -> subject);
+    }
+
+    /**
+     * Runs the steps and waits until they are done.
+     *
+     * @param subject what the steps work on
+     * @return the subject
+     * @throws RuntimeException the failure of a step
+     */
+    public T runAndWait(T subject) {
+        try {
+            return run(subject).join();
+        } catch (CompletionException e) {
+            Throwable cause = e;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
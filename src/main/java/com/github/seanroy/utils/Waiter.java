@@ -0,0 +1,135 @@
+package com.github.seanroy.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * I poll a resource until it reaches a desired state. Polls start after a short initial delay and back off
+ * exponentially, with jitter, up to a maximum delay. Waiting fails as soon as the resource reports a terminal
+ * failure or when the deadline passes.
+ *
+ * @author sean
+ */
+public class Waiter {
+    private final Log log;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final long timeoutMillis;
+
+    public Waiter(Log log, long initialDelayMillis, long maxDelayMillis, long timeoutMillis) {
+        this.log = log;
+        this.initialDelayMillis = Math.max(1, initialDelayMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Polls until the resource is done.
+     *
+     * @param description what is being waited for, used in log and error messages
+     * @param poll fetches the current state of the resource
+     * @param done whether the state is the desired one
+     * @param failure the reason the state is a terminal failure, or null if it is not
+     * @param status a short description of the state for progress messages
+     * @param <T> type of the polled state
+     * @return the first state which is done
+     * @throws IllegalStateException on terminal failure, timeout or interruption
+     */
+    public <T> T await(String description, Supplier<T> poll, Predicate<T> done, Function<T, String> failure,
+                       Function<T, String> status) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long delay = initialDelayMillis;
+
+        while (true) {
+            try {
+                Thread.sleep(sleepMillis(delay, deadline));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + description, e);
+            }
+
+            T state = poll.get();
+            if (isDone(description, state, done, failure, status, deadline)) {
+                return state;
+            }
+            delay = Math.min(maxDelayMillis, delay * 2);
+        }
+    }
+
+    /**
+     * Polls like {@link #await} but without holding a thread while waiting: polls are scheduled on the scheduler
+     * and run on the executor.
+     *
+     * @param description what is being waited for, used in log and error messages
+     * @param poll fetches the current state of the resource
+     * @param done whether the state is the desired one
+     * @param failure the reason the state is a terminal failure, or null if it is not
+     * @param status a short description of the state for progress messages
+     * @param scheduler schedules the polls
+     * @param executor runs the polls
+     * @param <T> type of the polled state
+     * @return the first state which is done, or an IllegalStateException on terminal failure or timeout
+     */
+    public <T> CompletableFuture<T> awaitAsync(String description, Supplier<T> poll, Predicate<T> done,
+                                               Function<T, String> failure, Function<T, String> status,
+                                               ScheduledExecutorService scheduler, Executor executor) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        schedulePoll(description, poll, done, failure, status, scheduler, executor, initialDelayMillis, deadline, result);
+        return result;
+    }
+
+    private <T> void schedulePoll(String description, Supplier<T> poll, Predicate<T> done,
+                                  Function<T, String> failure, Function<T, String> status,
+                                  ScheduledExecutorService scheduler, Executor executor,
+                                  long delay, long deadline, CompletableFuture<T> result) {
+        scheduler.schedule(() -> CompletableFuture.supplyAsync(poll, executor).whenComplete((state, error) -> {
+            try {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else if (isDone(description, state, done, failure, status, deadline)) {
+                    result.complete(state);
+                } else {
+                    schedulePoll(description, poll, done, failure, status, scheduler, executor,
+                                 Math.min(maxDelayMillis, delay * 2), deadline, result);
+                }
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }), sleepMillis(delay, deadline), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Equal jitter: sleep between half and all of the current delay, but not past the deadline.
+     */
+    private long sleepMillis(long delay, long deadline) {
+        long sleep = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        return Math.max(0, Math.min(sleep, deadline - System.currentTimeMillis()));
+    }
+
+    private <T> boolean isDone(String description, T state, Predicate<T> done, Function<T, String> failure,
+                               Function<T, String> status, long deadline) {
+        if (done.test(state)) {
+            return true;
+        }
+        String reason = failure.apply(state);
+        if (reason != null) {
+            throw new IllegalStateException(description + " failed: " + reason);
+        }
+        if (System.currentTimeMillis() >= deadline) {
+            throw new IllegalStateException(String.format("Timed out after %d seconds waiting for %s <%s>",
+                                                          timeoutMillis / 1000, description, status.apply(state)));
+        }
+
+        log.info(String.format("%s is still processing <%s>, waiting... ", description, status.apply(state)));
+        return false;
+    }
+}
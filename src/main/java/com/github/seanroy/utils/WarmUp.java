@@ -0,0 +1,229 @@
+package com.github.seanroy.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.LogType;
+
+/**
+ * I invoke a version of a function many times at once, so that Lambda initializes an execution environment for each
+ * invocation before real traffic reaches the version. The invocations are held until all of them are ready to be
+ * sent, so none of them can reuse an environment another one initialized. Each invocation that had to initialize or
+ * restore an environment says so in the tail of its log. I am shared by the warm-ups of all functions, whose
+ * invocations together never use more than my maximum of threads. Warm-ups which don't fit in yet wait in line
+ * without holding a thread of their caller.
+ *
+ * @author sean
+ */
+public class WarmUp {
+    private static final String[] INITIALIZED = { "Init Duration:", "Restore Duration:" };
+
+    /**
+     * I am the outcome of a warm-up.
+     */
+    public static class Result {
+        private final int invocations;
+        private int initialized;
+        private int errors;
+        private String firstError;
+
+        Result(int invocations) {
+            this.invocations = invocations;
+        }
+
+        public int getInvocations() {
+            return invocations;
+        }
+
+        /**
+         * @return the invocations which initialized or restored an execution environment
+         */
+        public synchronized int getInitialized() {
+            return initialized;
+        }
+
+        /**
+         * @return the invocations which failed, were throttled or couldn't be sent
+         */
+        public synchronized int getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return why the first invocation failed, or null if none did
+         */
+        public synchronized String getFirstError() {
+            return firstError;
+        }
+
+        private synchronized void succeeded(boolean initialized) {
+            if (initialized) {
+                this.initialized++;
+            }
+        }
+
+        private synchronized void failed(String error) {
+            errors++;
+            if (firstError == null) {
+                firstError = error;
+            }
+        }
+    }
+
+    /*
+     * A warm-up waiting for threads for all of its invocations.
+     */
+    private static class Waiting {
+        final int concurrency;
+        final CompletableFuture<Void> slots = new CompletableFuture<>();
+
+        Waiting(int concurrency) {
+            this.concurrency = concurrency;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int maxConcurrency;
+    private final Deque<Waiting> waiting = new ArrayDeque<>();
+    private int available;
+
+    /**
+     * @param maxConcurrency the most invocations in flight at once, across all warm-ups
+     */
+    public WarmUp(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        this.available = maxConcurrency;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "lambda-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    /**
+     * Sends the invocations as soon as they fit in with those of other warm-ups in flight. Warm-ups are started in
+     * the order they were asked for.
+     *
+     * @param lambdaClient the Lambda API, or a stand-in for it
+     * @param functionName the function
+     * @param qualifier the version to warm up
+     * @param concurrency the number of simultaneous invocations
+     * @param payload the event every invocation gets
+     * @return completes once every invocation has returned or failed, without failing itself
+     */
+    public CompletableFuture<Result> invoke(AWSLambda lambdaClient, String functionName, String qualifier, int concurrency,
+                                            String payload) {
+        if (concurrency > maxConcurrency) {
+            throw new IllegalArgumentException("Can't warm up " + functionName + " with " + concurrency
+                                               + " invocations, at most " + maxConcurrency + " are allowed");
+        }
+        // All invocations of a warm-up must run at once, so they only start once there are threads for all of them.
+        return acquire(concurrency).thenCompose(slots -> send(lambdaClient, functionName, qualifier, concurrency, payload));
+    }
+
+    private CompletableFuture<Result> send(AWSLambda lambdaClient, String functionName, String qualifier, int concurrency,
+                                           String payload) {
+        Result result = new Result(concurrency);
+        CountDownLatch ready = new CountDownLatch(concurrency);
+        CompletableFuture<?>[] invocations;
+        try {
+            invocations = IntStream.range(0, concurrency)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                        ready.countDown();
+                        try {
+                            ready.await();
+                            InvokeResult invocation = lambdaClient.invoke(new InvokeRequest()
+                                    .withFunctionName(functionName)
+                                    .withQualifier(qualifier)
+                                    .withLogType(LogType.Tail)
+                                    .withPayload(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8))));
+                            if (invocation.getFunctionError() != null) {
+                                result.failed(invocation.getFunctionError());
+                            } else {
+                                result.succeeded(isInitialized(invocation));
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            result.failed("Interrupted");
+                        } catch (RuntimeException e) {
+                            result.failed(e.getMessage());
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new);
+        } catch (RuntimeException e) {
+            release(concurrency);
+            throw e;
+        }
+        return CompletableFuture.allOf(invocations).handle((done, e) -> {
+            release(concurrency);
+            return result;
+        });
+    }
+
+    /*
+     * Completes once the threads are reserved. A warm-up doesn't overtake those waiting before it.
+     */
+    private CompletableFuture<Void> acquire(int concurrency) {
+        synchronized (waiting) {
+            if (waiting.isEmpty() && available >= concurrency) {
+                available -= concurrency;
+                return CompletableFuture.completedFuture(null);
+            }
+            Waiting next = new Waiting(concurrency);
+            waiting.add(next);
+            return next.slots;
+        }
+    }
+
+    private void release(int concurrency) {
+        List<Waiting> granted = new ArrayList<>();
+        synchronized (waiting) {
+            available += concurrency;
+            while (!waiting.isEmpty() && available >= waiting.peek().concurrency) {
+                Waiting next = waiting.poll();
+                available -= next.concurrency;
+                granted.add(next);
+            }
+        }
+        // Starting a warm-up only hands its invocations to the executor, which is done outside the lock.
+        granted.forEach(next -> next.slots.complete(null));
+    }
+
+    /**
+     * Stops the threads once the warm-ups in flight are done.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static boolean isInitialized(InvokeResult invocation) {
+        if (invocation.getLogResult() == null) {
+            return false;
+        }
+        String log = new String(Base64.getDecoder().decode(invocation.getLogResult()), StandardCharsets.UTF_8);
+        for (String initialized : INITIALIZED) {
+            if (log.contains(initialized)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.seanroy.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.github.seanroy.utils.AdaptiveLimiter;
+
+public class AdaptiveLimiterTest {
+
+    @Test
+    public void testGrowsOnSuccess() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 2, 8);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+            limiter.release(false);
+        }
+        assertTrue(limiter.getLimit() > 2);
+        assertTrue(limiter.getLimit() <= 8);
+    }
+
+    @Test
+    public void testHalvesOnThrottle() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 8, 8);
+        limiter.acquire();
+        assertTrue(limiter.release(true));
+        assertEquals(4, limiter.getLimit());
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+            limiter.release(true);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.seanroy.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+import com.github.seanroy.utils.ArtifactDigest;
+
+public class ArtifactDigestTest {
+
+    private File artifact(String content) throws IOException {
+        File file = File.createTempFile("artifact", ".jar");
+        file.deleteOnExit();
+        new File(file.getPath() + ArtifactDigest.SIDECAR_SUFFIX).deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    @Test
+    public void testDigests() throws IOException {
+        File file = artifact("aaaaabbbbbcc");
+
+        ArtifactDigest digest = ArtifactDigest.of(file, 5);
+
+        assertEquals(DigestUtils.md5Hex("aaaaabbbbbcc"), digest.getMd5());
+        assertEquals(Base64.getEncoder().encodeToString(DigestUtils.sha256("aaaaabbbbbcc")), digest.getSha256());
+        assertEquals(3, digest.getPartMD5s().size());
+    }
+
+    @Test
+    public void testMultipartETag() throws IOException {
+        File file = artifact("aaaaabbbbbcc");
+
+        byte[] partMD5s = new byte[48];
+        System.arraycopy(DigestUtils.md5("aaaaa"), 0, partMD5s, 0, 16);
+        System.arraycopy(DigestUtils.md5("bbbbb"), 0, partMD5s, 16, 16);
+        System.arraycopy(DigestUtils.md5("cc"), 0, partMD5s, 32, 16);
+
+        assertEquals(DigestUtils.md5Hex(partMD5s) + "-3", ArtifactDigest.of(file, 5).getMultipartETag());
+        assertEquals(DigestUtils.md5Hex(DigestUtils.md5("aaaaabbbbbcc")) + "-1", ArtifactDigest.of(file, 12).getMultipartETag());
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        File file = artifact("aaaaabbbbbcc");
+
+        ArtifactDigest digest = ArtifactDigest.of(file, 5);
+
+        assertSame(digest, ArtifactDigest.of(file, 5));
+        assertTrue(new File(file.getPath() + ArtifactDigest.SIDECAR_SUFFIX).isFile());
+
+        Files.write(file.toPath(), "changed".getBytes(StandardCharsets.US_ASCII));
+        assertTrue(file.setLastModified(digest.getLastModified() + 2000));
+        assertEquals(DigestUtils.md5Hex("changed"), ArtifactDigest.of(file, 5).getMd5());
+    }
+}
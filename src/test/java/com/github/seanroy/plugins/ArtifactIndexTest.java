@@ -0,0 +1,34 @@
+package com.github.seanroy.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class ArtifactIndexTest {
+
+    @Test
+    public void testAddObject() throws Exception {
+        File directory = Files.createTempDirectory("artifact-index").toFile();
+        File file = new File(directory, "index.json");
+        try {
+            assertNull(ArtifactIndex.load(file).get("bucket", "key"));
+
+            ArtifactIndex.addObject(file, "bucket", "/a.jar", "version-1");
+            ArtifactIndex.addObject(file, "bucket", "/b.jar", null);
+
+            ArtifactIndex index = ArtifactIndex.load(file);
+            assertEquals("version-1", index.get("bucket", "/a.jar").getVersionId());
+            assertNotNull(index.get("bucket", "/b.jar"));
+            assertNull(index.get("bucket", "/b.jar").getVersionId());
+            assertNull(index.get("other-bucket", "/a.jar"));
+        } finally {
+            file.delete();
+            directory.delete();
+        }
+    }
+}
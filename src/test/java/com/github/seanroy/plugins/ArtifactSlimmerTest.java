@@ -0,0 +1,99 @@
+package com.github.seanroy.plugins;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import com.github.seanroy.utils.ArtifactSlimmer;
+
+public class ArtifactSlimmerTest {
+
+    @Test
+    public void testSlim() throws Exception {
+        File directory = Files.createTempDirectory("slim").toFile();
+        File source = new File(directory, "function.jar");
+        File target = new File(directory, "slim/function.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(source))) {
+            for (String name : asList("com/example/Handler.class", "META-INF/MANIFEST.MF", "META-INF/SIGNER.SF",
+                                      "META-INF/maven/com.example/function/pom.xml", "META-INF/LICENSE.txt",
+                                      "META-INF/licenses/LICENSE-apache.txt", "META-INF/NOTICE",
+                                      "native/windows-x86_64/lib.dll", "native/linux-x86_64/libnative.so",
+                                      "README.md", "keep/README.md")) {
+                out.putNextEntry(new ZipEntry(name));
+                // Both license files have the same text, the notice another one.
+                String content = name.contains("LICENSE") ? "Apache License" : name;
+                out.write(content.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+
+        try {
+            Map<String, Long> saved = new ArtifactSlimmer(singletonList("keep/**"), singletonList("**/*.md"))
+                    .slim(source, target);
+
+            List<String> kept;
+            try (ZipFile zip = new ZipFile(target)) {
+                kept = zip.stream().map(ZipEntry::getName).collect(Collectors.toList());
+            }
+            assertEquals(asList("com/example/Handler.class", "META-INF/MANIFEST.MF", "META-INF/LICENSE.txt",
+                                "META-INF/NOTICE", "native/linux-x86_64/libnative.so", "keep/README.md"), kept);
+            assertTrue(saved.containsKey(ArtifactSlimmer.SIGNATURES));
+            assertTrue(saved.containsKey(ArtifactSlimmer.MAVEN_METADATA));
+            assertTrue(saved.containsKey(ArtifactSlimmer.DUPLICATE_LICENSES));
+            assertTrue(saved.containsKey(ArtifactSlimmer.OTHER_PLATFORMS));
+            assertTrue(saved.containsKey(ArtifactSlimmer.EXCLUDED));
+            assertFalse(saved.containsKey(ArtifactSlimmer.TEST_RESOURCES));
+        } finally {
+            target.delete();
+            target.getParentFile().delete();
+            source.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testPackageResourcesAreNotLicenses() throws Exception {
+        File directory = Files.createTempDirectory("slim").toFile();
+        File source = new File(directory, "function.jar");
+        File target = new File(directory, "slim/function.jar");
+        List<String> names = asList("LICENSE", "META-INF/LICENSE", "com/acme/license.properties", "org/x/NoticeBoard.class");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(source))) {
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                // Every entry has the same content, but only the license files are deduplicated.
+                out.write("Apache License".getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+
+        try {
+            new ArtifactSlimmer(null, null).slim(source, target);
+
+            List<String> kept;
+            try (ZipFile zip = new ZipFile(target)) {
+                kept = zip.stream().map(ZipEntry::getName).collect(Collectors.toList());
+            }
+            assertEquals(asList("LICENSE", "com/acme/license.properties", "org/x/NoticeBoard.class"), kept);
+        } finally {
+            target.delete();
+            target.getParentFile().delete();
+            source.delete();
+            directory.delete();
+        }
+    }
+}
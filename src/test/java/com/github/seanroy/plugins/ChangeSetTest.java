@@ -0,0 +1,95 @@
+package com.github.seanroy.plugins;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import com.amazonaws.auth.policy.Policy;
+import com.amazonaws.services.lambda.model.AliasConfiguration;
+import com.amazonaws.services.lambda.model.EnvironmentResponse;
+import com.amazonaws.services.lambda.model.EventSourceMappingConfiguration;
+import com.amazonaws.services.lambda.model.FunctionConfiguration;
+import com.amazonaws.services.lambda.model.VpcConfigResponse;
+
+public class ChangeSetTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        FunctionConfiguration configuration = new FunctionConfiguration()
+                .withFunctionName("test")
+                .withFunctionArn("arn:aws:lambda:us-east-1:123456789012:function:test")
+                .withMemorySize(512)
+                .withVpcConfig(new VpcConfigResponse().withSubnetIds("subnet-1"))
+                .withEnvironment(new EnvironmentResponse().addVariablesEntry("KEY", "value"));
+        Policy policy = Policy.fromJson("{\"Statement\":[{\"Sid\":\"lambda-maven-plugin-sns-1\",\"Effect\":\"Allow\","
+                + "\"Principal\":{\"Service\":\"sns.amazonaws.com\"},\"Action\":\"lambda:InvokeFunction\","
+                + "\"Resource\":\"*\"}]}");
+        FunctionState state = new FunctionState(configuration, () -> policy,
+                () -> singletonList(new AliasConfiguration().withName("live")),
+                () -> singletonList(new EventSourceMappingConfiguration().withUUID("uuid")
+                        .withEventSourceArn("arn:aws:sqs:us-east-1:123456789012:queue")),
+                () -> 10,
+                () -> singletonMap("live", 5));
+        // Only concurrency read while planning is recorded.
+        state.getReservedConcurrency();
+
+        ChangeSet changeSet = new ChangeSet("sha");
+        ChangeSet.FunctionChange change = new ChangeSet.FunctionChange("test", ChangeSet.Action.UPDATE, "hash", state);
+        change.setKeepAliveChanged(true);
+        change.getTriggers().add(new ChangeSet.TriggerChange("SNS", "topic", "arn:aws:sns:us-east-1:123456789012:topic", ChangeSet.Action.CREATE));
+        change.addDeletion(ChangeSet.DeletionKind.PERMISSION, "lambda-maven-plugin-sns-1", "SNS permission lambda-maven-plugin-sns-1");
+        change.addDeletion(ChangeSet.DeletionKind.PERMISSION, "lambda-maven-plugin-sns-1", "stale permission lambda-maven-plugin-sns-1");
+        changeSet.getFunctions().put("us-east-1:test", change);
+
+        File file = Files.createTempFile("change-set", ".json").toFile();
+        try {
+            changeSet.save(file);
+            ChangeSet loaded = ChangeSet.load(file);
+
+            assertEquals("sha", loaded.getArtifactSha256());
+            ChangeSet.FunctionChange loadedChange = loaded.getFunctions().get("us-east-1:test");
+            assertEquals(ChangeSet.Action.UPDATE, loadedChange.getAction());
+            assertTrue(loadedChange.isKeepAliveChanged());
+            assertFalse(loadedChange.isScheduleRuleChanged());
+            assertEquals(ChangeSet.Action.CREATE, loadedChange.getTriggers().get(0).getAction());
+            assertEquals("arn:aws:sns:us-east-1:123456789012:topic", loadedChange.getTriggers().get(0).getSourceArn());
+            assertEquals(1, loadedChange.getDeletions().size());
+            assertEquals(ChangeSet.DeletionKind.PERMISSION, loadedChange.getDeletions().get(0).getKind());
+            assertEquals("lambda-maven-plugin-sns-1", loadedChange.getDeletions().get(0).getId());
+
+            FunctionState loadedState = loadedChange.toState();
+            assertTrue(loadedState.exists());
+            assertEquals(Integer.valueOf(512), loadedState.getConfiguration().getMemorySize());
+            assertEquals("subnet-1", loadedState.getConfiguration().getVpcConfig().getSubnetIds().get(0));
+            assertEquals("value", loadedState.getConfiguration().getEnvironment().getVariables().get("KEY"));
+            assertEquals("lambda-maven-plugin-sns-1", loadedState.getPolicy().getStatements().iterator().next().getId());
+            assertEquals("live", loadedState.getAliases().get(0).getName());
+            assertTrue(loadedState.getEventSourceMappings().find("arn:aws:sqs:us-east-1:123456789012:queue", null).isPresent());
+            assertEquals(Integer.valueOf(10), loadedState.getReservedConcurrency());
+            assertTrue(loadedState.getProvisionedConcurrency().isEmpty());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testHasChanges() {
+        ChangeSet.FunctionChange change = new ChangeSet.FunctionChange("test", ChangeSet.Action.UNCHANGED, "hash", FunctionState.absent());
+        change.getTriggers().add(new ChangeSet.TriggerChange("SNS", "topic", null, ChangeSet.Action.UNCHANGED));
+        assertFalse(change.hasChanges());
+
+        change.getTriggers().add(new ChangeSet.TriggerChange("SQS", "queue", null, ChangeSet.Action.CREATE));
+        assertTrue(change.hasChanges());
+
+        ChangeSet.FunctionChange deletion = new ChangeSet.FunctionChange("test", ChangeSet.Action.UNCHANGED, "hash", FunctionState.absent());
+        deletion.addDeletion(ChangeSet.DeletionKind.RULE, "rule", "CloudWatch Events rule rule");
+        assertTrue(deletion.hasChanges());
+    }
+}
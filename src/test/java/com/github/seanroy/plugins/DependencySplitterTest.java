@@ -0,0 +1,115 @@
+package com.github.seanroy.plugins;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import com.github.seanroy.utils.DependencySplitter;
+
+public class DependencySplitterTest {
+
+    @Test
+    public void testSplit() throws Exception {
+        File directory = Files.createTempDirectory("split").toFile();
+        File classes = new File(directory, "classes");
+        new File(classes, "com/example").mkdirs();
+        Files.write(new File(classes, "com/example/Handler.class").toPath(), new byte[] { 1 });
+        File source = new File(directory, "function.jar");
+        File functionZip = new File(directory, "layer/function.jar");
+        File layerZip = new File(directory, "layer/function-dependencies.zip");
+        try {
+            jar(source, 1000L, "dependency");
+            DependencySplitter splitter = new DependencySplitter(classes);
+            DependencySplitter.Split split = splitter.split(source, functionZip, layerZip);
+
+            assertEquals(asList("META-INF/MANIFEST.MF", "com/example/Handler.class"), names(functionZip));
+            assertEquals(singletonList("java/lib/function-dependencies.jar"), names(layerZip));
+            List<String> dependencies = new ArrayList<>();
+            try (ZipFile layer = new ZipFile(layerZip);
+                 ZipInputStream in = new ZipInputStream(layer.getInputStream(layer.getEntry("java/lib/function-dependencies.jar")))) {
+                for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                    dependencies.add(entry.getName());
+                }
+            }
+            assertEquals(asList("META-INF/services/org.lib.Service", "org/lib/Lib.class"), dependencies);
+            assertEquals(2, split.getFunctionEntries());
+            assertEquals(2, split.getDependencyEntries());
+
+            // Rebuilding the jar doesn't change the hash, changing a dependency does.
+            jar(source, 2000L, "dependency");
+            assertEquals(split.getDependenciesSha256(), splitter.split(source, functionZip, layerZip).getDependenciesSha256());
+            jar(source, 2000L, "upgraded dependency");
+            assertNotEquals(split.getDependenciesSha256(), splitter.split(source, functionZip, layerZip).getDependenciesSha256());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testSplitWithoutDependencies() throws Exception {
+        File directory = Files.createTempDirectory("split").toFile();
+        File source = new File(directory, "function.jar");
+        try {
+            jar(source, 1000L, "dependency");
+            // Every entry is the project's if the classes directory has them all.
+            File classes = new File(directory, "classes");
+            for (String name : names(source)) {
+                new File(classes, name).getParentFile().mkdirs();
+                Files.write(new File(classes, name).toPath(), new byte[0]);
+            }
+            DependencySplitter.Split split = new DependencySplitter(classes)
+                    .split(source, new File(directory, "layer/function.jar"), new File(directory, "layer/layer.zip"));
+            assertNull(split.getDependenciesSha256());
+            assertEquals(4, split.getFunctionEntries());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void jar(File file, long time, String dependency) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (String name : asList("com/example/", "com/example/Handler.class", "META-INF/MANIFEST.MF",
+                                      "org/lib/Lib.class", "META-INF/services/org.lib.Service")) {
+                ZipEntry entry = new ZipEntry(name);
+                entry.setTime(time);
+                out.putNextEntry(entry);
+                if (!name.endsWith("/")) {
+                    out.write((name.startsWith("org/") ? dependency : name).getBytes(StandardCharsets.UTF_8));
+                }
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static List<String> names(File zip) throws IOException {
+        try (ZipFile file = new ZipFile(zip)) {
+            return file.stream().map(ZipEntry::getName).filter(name -> !name.endsWith("/")).collect(Collectors.toList());
+        }
+    }
+
+    private static void delete(File directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
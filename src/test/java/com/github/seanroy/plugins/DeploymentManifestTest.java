@@ -0,0 +1,33 @@
+package com.github.seanroy.plugins;
+
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class DeploymentManifestTest {
+
+    @Test
+    public void testSaveKeepsDeploymentsOfOtherRegions() throws Exception {
+        File directory = Files.createTempDirectory("manifest").toFile();
+        File file = new File(directory, "manifest.json");
+        try {
+            DeploymentManifest east = DeploymentManifest.load(file);
+            DeploymentManifest west = DeploymentManifest.load(file);
+            east.put("us-east-1:test", new DeploymentManifest.Entry("sha", "hash", "1", "arn:east", emptyList()));
+            west.put("us-west-2:test", new DeploymentManifest.Entry("sha", "hash", "3", "arn:west", emptyList()));
+            east.save(file);
+            west.save(file);
+
+            DeploymentManifest saved = DeploymentManifest.load(file);
+            assertEquals("1", saved.get("us-east-1:test").getVersion());
+            assertEquals("3", saved.get("us-west-2:test").getVersion());
+        } finally {
+            file.delete();
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.seanroy.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.github.seanroy.utils.EventSourceArns;
+
+public class EventSourceArnsTest {
+
+    @Test
+    public void testKinesisStreamName() {
+        assertEquals("my-stream", EventSourceArns.kinesisStreamName("arn:aws:kinesis:us-east-1:123456789012:stream/my-stream"));
+    }
+
+    @Test
+    public void testDynamoDBTableName() {
+        assertEquals("my-table", EventSourceArns.dynamoDBTableName(
+                "arn:aws:dynamodb:us-east-1:123456789012:table/my-table/stream/2017-01-01T00:00:00.000"));
+    }
+
+    @Test
+    public void testSqsQueueName() {
+        assertEquals("my-queue", EventSourceArns.sqsQueueName("arn:aws:sqs:us-east-1:123456789012:my-queue"));
+    }
+}
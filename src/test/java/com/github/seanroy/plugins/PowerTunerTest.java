@@ -0,0 +1,163 @@
+package com.github.seanroy.plugins;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import com.amazonaws.services.lambda.AbstractAWSLambda;
+import com.amazonaws.services.lambda.model.DeleteFunctionRequest;
+import com.amazonaws.services.lambda.model.DeleteFunctionResult;
+import com.amazonaws.services.lambda.model.GetFunctionConfigurationRequest;
+import com.amazonaws.services.lambda.model.GetFunctionConfigurationResult;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.PublishVersionRequest;
+import com.amazonaws.services.lambda.model.PublishVersionResult;
+import com.amazonaws.services.lambda.model.UpdateFunctionCodeRequest;
+import com.amazonaws.services.lambda.model.UpdateFunctionCodeResult;
+import com.amazonaws.services.lambda.model.UpdateFunctionConfigurationRequest;
+import com.amazonaws.services.lambda.model.UpdateFunctionConfigurationResult;
+import com.github.seanroy.utils.Waiter;
+
+public class PowerTunerTest {
+
+    /**
+     * A local stand-in for Lambda whose function takes 25600 MB-ms of work, never less than 25 ms, on x86_64 and
+     * three quarters of that on arm64.
+     */
+    private static class LocalLambda extends AbstractAWSLambda {
+        private int memorySize = 512;
+        private String architecture = "x86_64";
+        private final Map<String, Integer> versions = new HashMap<>();
+        private final List<String> deleted = new ArrayList<>();
+        private int invocations;
+
+        @Override
+        public GetFunctionConfigurationResult getFunctionConfiguration(GetFunctionConfigurationRequest request) {
+            return new GetFunctionConfigurationResult().withState("Active")
+                                                       .withLastUpdateStatus("Successful")
+                                                       .withMemorySize(memorySize)
+                                                       .withArchitectures(architecture)
+                                                       .withCodeSha256("sha");
+        }
+
+        @Override
+        public UpdateFunctionConfigurationResult updateFunctionConfiguration(UpdateFunctionConfigurationRequest request) {
+            memorySize = request.getMemorySize();
+            return new UpdateFunctionConfigurationResult();
+        }
+
+        @Override
+        public UpdateFunctionCodeResult updateFunctionCode(UpdateFunctionCodeRequest request) {
+            architecture = request.getArchitectures().get(0);
+            return new UpdateFunctionCodeResult();
+        }
+
+        @Override
+        public PublishVersionResult publishVersion(PublishVersionRequest request) {
+            String version = String.valueOf(versions.size() + 1);
+            versions.put(version, memorySize);
+            return new PublishVersionResult().withVersion(version);
+        }
+
+        @Override
+        public InvokeResult invoke(InvokeRequest request) {
+            invocations++;
+            long work = "arm64".equals(architecture) ? 19200 : 25600;
+            long billed = Math.max(25, work / versions.get(request.getQualifier()));
+            String log = "START RequestId: 1\nEND RequestId: 1\nREPORT RequestId: 1\tDuration: " + (billed - 0.5)
+                         + " ms\tBilled Duration: " + billed + " ms\tMemory Size: " + memorySize + " MB\n";
+            return new InvokeResult().withStatusCode(200)
+                                     .withLogResult(Base64.getEncoder().encodeToString(log.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public DeleteFunctionResult deleteFunction(DeleteFunctionRequest request) {
+            deleted.add(request.getQualifier());
+            return new DeleteFunctionResult();
+        }
+    }
+
+    private static PowerTuner tuner(LocalLambda lambda) {
+        return new PowerTuner(lambda, new Waiter(new SystemStreamLog(), 1, 1, 1000), new SystemStreamLog());
+    }
+
+    @Test
+    public void testTune() {
+        LocalLambda lambda = new LocalLambda();
+        List<PowerTuner.Result> results = tuner(lambda).tune("function", asList(128, 256, 1024, 2048), emptyList(),
+                                                             UpdateFunctionCodeRequest::new, null, 3, "{}");
+
+        assertEquals(4, results.size());
+        assertEquals(200, results.get(0).getAverageDuration(), 0);
+        assertEquals(25, results.get(2).getAverageDuration(), 0);
+        // One unmeasured invocation per version warms it up, and every version is deleted.
+        assertEquals(16, lambda.invocations);
+        assertEquals(asList("1", "2", "3", "4"), lambda.deleted);
+        assertEquals(512, lambda.memorySize);
+
+        // Until 1024 MB the price stays the same, beyond it the duration doesn't drop any more.
+        assertEquals(128, PowerTuner.recommend(results, PowerTuner.COST).getMemorySize());
+        assertEquals(1024, PowerTuner.recommend(results, PowerTuner.SPEED).getMemorySize());
+        assertEquals(1024, PowerTuner.recommend(results, PowerTuner.BALANCED).getMemorySize());
+
+        String report = PowerTuner.report("function", results, PowerTuner.recommend(results, PowerTuner.SPEED));
+        assertTrue(report.contains("| x86_64 | 1024 | 25.0 | 25 | 0 |"));
+        assertTrue(report.contains("Recommended: memorySize 1024, architecture x86_64"));
+    }
+
+    @Test
+    public void testTuneArchitectures() {
+        LocalLambda lambda = new LocalLambda();
+        List<PowerTuner.Result> results = tuner(lambda).tune("function", asList(256, 1024), asList("x86_64", "arm64"),
+                                                             UpdateFunctionCodeRequest::new, "sha", 1, "{}");
+
+        assertEquals(4, results.size());
+        assertEquals("arm64", PowerTuner.recommend(results, PowerTuner.COST).getArchitecture());
+        assertEquals("x86_64", lambda.architecture);
+        assertEquals(512, lambda.memorySize);
+    }
+
+    @Test
+    public void testArchitecturesRequireDeployedCode() {
+        LocalLambda lambda = new LocalLambda();
+        try {
+            tuner(lambda).tune("function", asList(256, 1024), asList("x86_64", "arm64"), UpdateFunctionCodeRequest::new,
+                               "other sha", 1, "{}");
+            fail();
+        } catch (IllegalStateException expected) {
+            // The function is left untouched.
+            assertEquals(0, lambda.invocations);
+            assertEquals("x86_64", lambda.architecture);
+        }
+    }
+
+    @Test
+    public void testBilledDuration() {
+        String log = "REPORT RequestId: 1\tDuration: 102.25 ms\tBilled Duration: 103 ms\tMemory Size: 512 MB";
+        assertEquals(Optional.of(103L), PowerTuner.billedDuration(
+                new InvokeResult().withLogResult(Base64.getEncoder().encodeToString(log.getBytes(StandardCharsets.UTF_8)))));
+        assertFalse(PowerTuner.billedDuration(new InvokeResult()).isPresent());
+        assertNull(PowerTuner.recommend(emptyList(), PowerTuner.COST));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownStrategy() {
+        PowerTuner.recommend(emptyList(), "fastest");
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.seanroy.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.github.seanroy.utils.S3ETags;
+
+public class S3ETagsTest {
+
+    @Test
+    public void testPartCount() {
+        assertEquals(-1, S3ETags.partCount("9b2cf535f27731c974343645a3985328"));
+        assertEquals(12, S3ETags.partCount("9b2cf535f27731c974343645a3985328-12"));
+    }
+
+    @Test
+    public void testPartSize() {
+        assertEquals(8L, S3ETags.partSize(100, 8));
+        assertEquals(11L, S3ETags.partSize(100001, 8));
+    }
+}
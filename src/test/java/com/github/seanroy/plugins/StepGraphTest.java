@@ -0,0 +1,93 @@
+package com.github.seanroy.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.github.seanroy.utils.StepGraph;
+
+public class StepGraphTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final List<String> done = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Function<String, CompletableFuture<String>> step(String name, Runnable action) {
+        return subject -> CompletableFuture.supplyAsync(() -> {
+            action.run();
+            done.add(name);
+            return subject;
+        }, executor);
+    }
+
+    @Test
+    public void testDependenciesRunFirst() {
+        new StepGraph<String>()
+                .add("code", step("code", () -> {}))
+                .add("configuration", step("configuration", () -> {}), "code")
+                .add("aliases", step("aliases", () -> {}), "code", "configuration")
+                .runAndWait("function");
+
+        assertEquals(3, done.size());
+        assertTrue(done.indexOf("code") < done.indexOf("configuration"));
+        assertTrue(done.indexOf("configuration") < done.indexOf("aliases"));
+    }
+
+    @Test
+    public void testIndependentStepsRunConcurrently() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Runnable awaitOther = () -> {
+            bothStarted.countDown();
+            try {
+                if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Steps didn't run concurrently");
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        new StepGraph<String>()
+                .add("sns", step("sns", awaitOther))
+                .add("sqs", step("sqs", awaitOther))
+                .runAndWait("function");
+
+        assertEquals(2, done.size());
+    }
+
+    @Test
+    public void testFailureSkipsDependents() {
+        StepGraph<String> steps = new StepGraph<String>()
+                .add("create", step("create", () -> { throw new IllegalStateException("create failed"); }))
+                .add("aliases", step("aliases", () -> {}), "create")
+                .add("keepAlive", step("keepAlive", () -> {}));
+        try {
+            steps.runAndWait("function");
+            fail("Expected the failure of the create step");
+        } catch (IllegalStateException e) {
+            assertEquals("create failed", e.getMessage());
+        }
+        assertEquals(1, done.size());
+        assertEquals("keepAlive", done.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDependency() {
+        new StepGraph<String>().add("aliases", step("aliases", () -> {}), "code");
+    }
+}
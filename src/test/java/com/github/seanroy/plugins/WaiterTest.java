@@ -0,0 +1,74 @@
+package com.github.seanroy.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import com.github.seanroy.utils.Waiter;
+
+public class WaiterTest {
+
+    private final Waiter waiter = new Waiter(new SystemStreamLog(), 1, 4, 500);
+
+    @Test
+    public void testAwaitDone() {
+        AtomicInteger polls = new AtomicInteger();
+
+        int state = waiter.await("counter", polls::incrementAndGet, i -> i == 3, i -> null, String::valueOf);
+
+        assertEquals(3, state);
+        assertEquals(3, polls.get());
+    }
+
+    @Test
+    public void testAwaitFailsFast() {
+        AtomicInteger polls = new AtomicInteger();
+        try {
+            waiter.await("counter", polls::incrementAndGet, i -> false, i -> i == 2 ? "Failed" : null, String::valueOf);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("Failed"));
+            assertEquals(2, polls.get());
+        }
+    }
+
+    @Test
+    public void testAwaitTimesOut() {
+        try {
+            new Waiter(new SystemStreamLog(), 1, 10, 50).await("nothing", () -> 0, i -> false, i -> null, String::valueOf);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("Timed out"));
+        }
+    }
+
+    @Test
+    public void testAwaitAsync() throws Exception {
+        AtomicInteger polls = new AtomicInteger();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            int state = waiter.awaitAsync("counter", polls::incrementAndGet, i -> i == 3, i -> null, String::valueOf,
+                                          scheduler, executor).get();
+            assertEquals(3, state);
+
+            waiter.awaitAsync("counter", polls::incrementAndGet, i -> false, i -> "Failed", String::valueOf,
+                              scheduler, executor).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        } finally {
+            scheduler.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+}
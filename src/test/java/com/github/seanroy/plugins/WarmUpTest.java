@@ -0,0 +1,121 @@
+package com.github.seanroy.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amazonaws.services.lambda.AbstractAWSLambda;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+import com.github.seanroy.utils.WarmUp;
+
+public class WarmUpTest {
+
+    /**
+     * A local stand-in for Lambda which starts a new execution environment for every invocation that arrives while
+     * none is idle, and is throttled beyond its concurrency.
+     */
+    private static class LocalLambda extends AbstractAWSLambda {
+        private final int concurrency;
+        private final AtomicInteger busy = new AtomicInteger();
+        private final AtomicInteger idle = new AtomicInteger();
+        private final AtomicInteger maxBusy = new AtomicInteger();
+        private final ConcurrentHashMap<String, String> payloads = new ConcurrentHashMap<>();
+
+        LocalLambda(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        @Override
+        public InvokeResult invoke(InvokeRequest request) {
+            payloads.put(request.getQualifier(), new String(request.getPayload().array(), StandardCharsets.UTF_8));
+            int running = busy.incrementAndGet();
+            try {
+                maxBusy.accumulateAndGet(running, Math::max);
+                if (running > concurrency) {
+                    throw new TooManyRequestsException("Rate Exceeded.");
+                }
+                boolean initialized = idle.getAndUpdate(environments -> Math.max(0, environments - 1)) == 0;
+                Thread.sleep(50);
+                idle.incrementAndGet();
+                String log = "REPORT RequestId: 1\tDuration: 50 ms" + (initialized ? "\tInit Duration: 300 ms" : "");
+                return new InvokeResult().withStatusCode(200)
+                                         .withLogResult(Base64.getEncoder().encodeToString(log.getBytes(StandardCharsets.UTF_8)));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                busy.decrementAndGet();
+            }
+        }
+    }
+
+    @Test
+    public void testInvokeAtOnce() {
+        LocalLambda lambda = new LocalLambda(10);
+        WarmUp.Result result = new WarmUp(8).invoke(lambda, "function", "3", 8, "{\"warmUp\":true}").join();
+
+        assertEquals(8, result.getInvocations());
+        assertEquals(8, result.getInitialized());
+        assertEquals(0, result.getErrors());
+        assertNull(result.getFirstError());
+        assertEquals(8, lambda.maxBusy.get());
+        assertEquals("{\"warmUp\":true}", lambda.payloads.get("3"));
+    }
+
+    @Test
+    public void testThrottledInvocationsAreErrors() {
+        WarmUp.Result result = new WarmUp(8).invoke(new LocalLambda(5), "function", "3", 8, "{}").join();
+
+        assertEquals(5, result.getInitialized());
+        assertEquals(3, result.getErrors());
+        assertTrue(result.getFirstError().startsWith("Rate Exceeded."));
+    }
+
+    @Test
+    public void testWarmUpsShareThreads() {
+        LocalLambda lambda = new LocalLambda(10);
+        WarmUp warmUp = new WarmUp(6);
+        try {
+            // Both warm-ups together need more threads than there are, so the second waits until the first is done.
+            CompletableFuture<WarmUp.Result> first = CompletableFuture.supplyAsync(() -> warmUp)
+                    .thenCompose(w -> w.invoke(lambda, "function", "3", 4, "{}"));
+            CompletableFuture<WarmUp.Result> second = CompletableFuture.supplyAsync(() -> warmUp)
+                    .thenCompose(w -> w.invoke(lambda, "function", "4", 4, "{}"));
+            assertEquals(0, first.join().getErrors() + second.join().getErrors());
+            assertEquals(4, lambda.maxBusy.get());
+        } finally {
+            warmUp.shutdown();
+        }
+    }
+
+    @Test
+    public void testWaitingDoesNotBlockTheCaller() {
+        LocalLambda lambda = new LocalLambda(10);
+        WarmUp warmUp = new WarmUp(4);
+        try {
+            CompletableFuture<WarmUp.Result> first = warmUp.invoke(lambda, "function", "3", 4, "{}");
+            // The second warm-up doesn't fit in until the first is done, yet invoke returns at once.
+            CompletableFuture<WarmUp.Result> second = warmUp.invoke(lambda, "function", "4", 4, "{}");
+            assertFalse(second.isDone());
+            assertEquals(0, first.join().getErrors() + second.join().getErrors());
+            assertEquals(4, lambda.maxBusy.get());
+        } finally {
+            warmUp.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConcurrencyIsCapped() {
+        new WarmUp(4).invoke(new LocalLambda(10), "function", "3", 8, "{}");
+    }
+}